@@ -0,0 +1,59 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import datamodel.GameData;
+import org.openjdk.jmh.annotations.*;
+import websocket.messages.LoadGameMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of the game payloads the server sends most often: a {@link GameData}
+ * for HTTP responses and a {@link LoadGameMessage} for every move broadcast.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GsonBenchmark {
+    private final Gson gson = new Gson();
+    private GameData gameData;
+    private LoadGameMessage loadGame;
+    private String gameDataJson;
+
+    @Setup
+    public void setup() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        gameData = new GameData(1, "white", "black", "benchmark", game, false);
+        loadGame = new LoadGameMessage(game);
+        gameDataJson = gson.toJson(gameData);
+    }
+
+    @Benchmark
+    public String serializeGameData() {
+        return gson.toJson(gameData);
+    }
+
+    // Server builds a new Gson for each request
+    @Benchmark
+    public String serializeGameDataNewGson() {
+        return new Gson().toJson(gameData);
+    }
+
+    @Benchmark
+    public GameData deserializeGameData() {
+        return gson.fromJson(gameDataJson, GameData.class);
+    }
+
+    @Benchmark
+    public String serializeLoadGame() {
+        return gson.toJson(loadGame);
+    }
+}
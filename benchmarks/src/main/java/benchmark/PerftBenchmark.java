@@ -0,0 +1,56 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.Fen;
+import chess.Perft;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation speed over the perft reference positions. Besides the time per
+ * search, the {@code nodes} counter reports leaf nodes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PerftBenchmark {
+
+    @Param({"start", "rook endgame", "middlegame"})
+    public String position;
+
+    @Param({"3"})
+    public int depth;
+
+    private ChessGame game;
+    private long expected;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        Perft.Position reference = Perft.REFERENCE.stream()
+                .filter(p -> p.name().equals(position))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown position: " + position));
+        game = Fen.parse(reference.fen());
+        expected = depth <= reference.maxDepth()? reference.expected(depth) : -1;
+    }
+
+    @Benchmark
+    public long perft(Nodes counter) {
+        long nodes = Perft.perft(game, depth);
+        if (expected >= 0 && nodes != expected) {
+            throw new IllegalStateException("perft(" + depth + ") of " + position + " gave " + nodes + ", expected " + expected);
+        }
+        counter.nodes += nodes;
+        return nodes;
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataaccess.MemoryDataAccess;
+import datamodel.AuthData;
+import datamodel.GameData;
+import datamodel.GameSpec;
+import datamodel.UserData;
+import org.openjdk.jmh.annotations.*;
+import service.UserService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP and WebSocket request handlers minus the transport: {@link UserService}
+ * over {@link MemoryDataAccess}, so the numbers show the service layer's own cost.
+ * Register and login are dominated by BCrypt by design.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    // knights out and back, which returns to the start position every four moves
+    private static final ChessMove[] MOVES = {
+            new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null),
+            new ChessMove(new ChessPosition(8, 7), new ChessPosition(6, 6), null),
+            new ChessMove(new ChessPosition(3, 6), new ChessPosition(1, 7), null),
+            new ChessMove(new ChessPosition(6, 6), new ChessPosition(8, 7), null),
+    };
+
+    @State(Scope.Thread)
+    public static class Service {
+        @Param({"100"})
+        public int games;
+
+        UserService service;
+        String authToken;
+        int gameID;
+        int nextUser;
+        int nextMove;
+
+        @Setup
+        public void setup() throws Exception {
+            service = new UserService(new MemoryDataAccess());
+            authToken = service.register(new UserData("player", "player@example.com", "password")).authToken();
+            for (int i = 0; i < games; i++) {
+                gameID = service.createGame(authToken, "game " + i);
+            }
+            // the same user on both sides, so every move in the cycle is theirs to make
+            service.joinGame(authToken, new GameSpec("WHITE", gameID));
+            service.joinGame(authToken, new GameSpec("BLACK", gameID));
+        }
+    }
+
+    @Benchmark
+    public String register(Service state) throws Exception {
+        String username = "user" + state.nextUser++;
+        return state.service.register(new UserData(username, username + "@example.com", "password")).authToken();
+    }
+
+    @Benchmark
+    public AuthData login(Service state) throws Exception {
+        return state.service.login("player", "password");
+    }
+
+    @Benchmark
+    public int createGame(Service state) throws Exception {
+        return state.service.createGame(state.authToken, "benchmark");
+    }
+
+    @Benchmark
+    public GameData[] listGames(Service state) throws Exception {
+        return state.service.listGames(state.authToken);
+    }
+
+    @Benchmark
+    public ChessGame applyMove(Service state) throws Exception {
+        ChessMove move = MOVES[state.nextMove];
+        state.nextMove = (state.nextMove + 1) % MOVES.length;
+        return state.service.applyMove(state.authToken, state.gameID, move);
+    }
+}
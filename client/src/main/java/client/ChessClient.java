@@ -24,6 +24,12 @@ public class ChessClient {
     private int gameID = -1;
     private ChessWebsocket ws;
     private final Map<Integer, Integer> tempToRealIDs = new HashMap<>();
+    private static final int PAGE_SIZE = 20;
+    private static final List<String> FILTERS = List.of("all", "open", "active", "finished");
+    // where the last listing stopped, so 'list more' can continue it
+    private String listFilter = null;
+    private Integer nextCursor = null;
+    private int nextTempID = 1;
 
     public ChessClient(String serverUrl){
         this.server = new ServerFacade(serverUrl);
@@ -86,7 +92,7 @@ public class ChessClient {
                 case "register" -> register(params);
                 case "login" -> login(params);
                 case "logout" -> logout();
-                case "list" -> listGames();
+                case "list" -> listGames(params);
                 case "create" -> createGame(params);
                 case "play" -> playGame(params);
                 case "join" -> joinGame(params);
@@ -139,18 +145,38 @@ public class ChessClient {
         return "BYE! Logged out successfully.";
     }
 
-    public String listGames() throws ResponseException {
+    public String listGames(String... params) throws ResponseException {
         assertSignedIn();
-        var res = server.listGames(authToken);
-        tempToRealIDs.clear();
+        if (params.length > 1) {
+            return "Usage: list [all|open|active|finished] or list more";
+        }
+        if (params.length == 1 && params[0].equals("more")) {
+            if (nextCursor == null) {
+                return "No more games. Type 'list' to start over.";
+            }
+        } else {
+            if (params.length == 1 && !FILTERS.contains(params[0])) {
+                return "Usage: list [all|open|active|finished] or list more";
+            }
+            listFilter = (params.length == 1)? params[0] : null;
+            nextCursor = null;
+            nextTempID = 1;
+            tempToRealIDs.clear();
+        }
+
+        var res = server.listGames(authToken, listFilter, nextCursor, PAGE_SIZE);
+        nextCursor = res.nextCursor();
 
         var out = new StringBuilder("Games:\n");
-        int tempID = 1;
         for (GameData game : res.games()){
+            int tempID = nextTempID++;
             tempToRealIDs.put(tempID, game.gameID());
-            out.append(String.format("  ID: %d | Name: %s | White: %s | Black: %s%n",
-                    tempID, game.gameName(), game.whiteUsername(), game.blackUsername()));
-            tempID++;
+            out.append(String.format("  ID: %d | Name: %s | White: %s | Black: %s%s%n",
+                    tempID, game.gameName(), game.whiteUsername(), game.blackUsername(),
+                    game.gameOver()? " | finished" : ""));
+        }
+        if (nextCursor != null) {
+            out.append("Type 'list more' to see more games.\n");
         }
         return out.toString();
     }
@@ -187,15 +213,7 @@ public class ChessClient {
             return "Invalid color. Use WHITE or BLACK";
         }
 
-        ListGamesResponse listResponse = server.listGames(authToken);
-        GameData targetGame = null;
-        for (GameData g : listResponse.games()){
-            if (g.gameID() == gameID){
-                targetGame = g;
-                break;
-            }
-        }
-
+        GameData targetGame = server.getGame(authToken, gameID);
         if (targetGame == null){
             return "Game not found on server. Try 'list' again to refresh.";
         }
@@ -208,8 +226,7 @@ public class ChessClient {
         var spec = new GameSpec(playerColor, gameID);
         server.joinGame(spec, authToken);
 
-        var fullGame = server.getGame(authToken,gameID);
-        gameModeAndRender(gameID, fullGame, playerColor);
+        gameModeAndRender(gameID, targetGame, playerColor);
         return String.format("Joined game %d as %s.", tempID, playerColor);
 
     }
@@ -255,15 +272,7 @@ public class ChessClient {
             throw new ResponseException(
                     "Invalid ID: " + tempID+". Try 'list' again." );
         }
-        ListGamesResponse listResponse = server.listGames(authToken);
-        GameData targetGame = null;
-        for (GameData g : listResponse.games()){
-            if (g.gameID() == gameID){
-                targetGame = g;
-                break;
-            }
-        }
-
+        GameData targetGame = server.getGame(authToken, gameID);
         if (targetGame == null){
             throw new ResponseException(
                     "Game ID " + tempID + " not found.");
@@ -276,8 +285,8 @@ public class ChessClient {
         } else{
             throw new ResponseException("You are not a player in this game. Join it first!");
         }
-        GameData fullGame = server.getGame(authToken, gameID);
-        if (fullGame == null|| fullGame.game()==null){
+        GameData fullGame = targetGame;
+        if (fullGame.game()==null){
             fullGame = new GameData(gameID, targetGame.whiteUsername(),
                     targetGame.blackUsername(), targetGame.gameName(), new ChessGame(), targetGame.gameOver());
         }
@@ -329,7 +338,8 @@ public class ChessClient {
         } else if (state == State.SIGNED_IN){
             return """
                     Commands:
-                    list - show all games
+                    list [all|open|active|finished] - show games
+                    list more - show the next page of games
                     create <gameName> - create your own
                     join <gameID> <WHITE|BLACK> - join a game
                     observe <gameID> - observe a game
@@ -1,4 +1,4 @@
 package datamodel;
 
-public record ListGamesResponse (GameData[] games) {
+public record ListGamesResponse (GameData[] games, Integer nextCursor) {
 }
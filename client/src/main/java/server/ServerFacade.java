@@ -7,6 +7,7 @@ import exception.ResponseException;
 import java.net.*;
 import java.net.http.*;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
 
 public class ServerFacade {
     private final HttpClient client = HttpClient.newHttpClient();
@@ -52,7 +53,29 @@ public class ServerFacade {
     }
 
     public ListGamesResponse listGames(String authToken) throws ResponseException {
-        var httpRequest = buildRequest("GET", "game", null, authToken);
+        return listGames(authToken, null, null, null);
+    }
+
+    /**
+     * Gets one page of games, without their boards
+     *
+     * @param filter all, open, active or finished; null for all
+     * @param cursor nextCursor from the previous page, or null for the first page
+     * @param limit  page size, or null for the server's default
+     */
+    public ListGamesResponse listGames(String authToken, String filter, Integer cursor, Integer limit) throws ResponseException {
+        var query = new StringBuilder();
+        if (filter != null) {
+            query.append("&filter=").append(URLEncoder.encode(filter, StandardCharsets.UTF_8));
+        }
+        if (cursor != null) {
+            query.append("&cursor=").append(cursor);
+        }
+        if (limit != null) {
+            query.append("&limit=").append(limit);
+        }
+        var path = query.isEmpty()? "game" : "game?" + query.substring(1);
+        var httpRequest = buildRequest("GET", path, null, authToken);
         var response = sendRequest(httpRequest);
         return handleResponse(response, ListGamesResponse.class);
     }
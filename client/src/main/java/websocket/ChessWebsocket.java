@@ -2,14 +2,21 @@ package websocket;
 
 import client.ChessClient;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import exception.ResponseException;
 import jakarta.websocket.*;
 import websocket.commands.UserGameCommand;
 import websocket.messages.*;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+
 @ClientEndpoint
 public class ChessWebsocket {
+    // -Dchess.protocol=binary switches to the compact binary frames; JSON is the default
+    private static final boolean BINARY = "binary".equalsIgnoreCase(System.getProperty("chess.protocol", "json"));
+
     private Session session;
     private final Gson gson = new Gson();
     private final ClientNotificationHandler handler;
@@ -22,7 +29,9 @@ public class ChessWebsocket {
         this.gameID = gameID;
         try {
             url = url.replaceFirst("^http","ws").replaceAll("/+$", "");
-            URI uri = new URI(url + "/ws");
+            // the server may then combine a move's messages into one frame, and
+            // send moves rather than whole boards
+            URI uri = new URI(url + "/ws?batch=true&delta=true" + (BINARY? "&protocol=binary" : ""));
 
             WebSocketContainer container = ContainerProvider.getWebSocketContainer();
             container.connectToServer(this, uri);
@@ -53,6 +62,17 @@ public class ChessWebsocket {
         handleIncomingMessage(json);
     }
 
+    @OnMessage
+    public void onMessage(ByteBuffer data){
+        try {
+            for (ServerMessage msg : BinaryCodec.decodeMessages(data)) {
+                handleIncomingMessage(msg);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Bad message from server: " + e.getMessage());
+        }
+    }
+
     @OnClose
     public void close(){
         try{
@@ -63,6 +83,10 @@ public class ChessWebsocket {
     }
 
     private void handleIncomingMessage(String json){
+        handleIncomingMessage(JsonParser.parseString(json).getAsJsonObject());
+    }
+
+    private void handleIncomingMessage(JsonObject json){
         ServerMessage base = gson.fromJson(json, ServerMessage.class);
 
         switch(base.getServerMessageType()){
@@ -78,11 +102,48 @@ public class ChessWebsocket {
                 NotificationMessage msg = gson.fromJson(json, NotificationMessage.class);
                 handler.notify(msg);
             }
+            case MOVE -> {
+                MoveMessage msg = gson.fromJson(json, MoveMessage.class);
+                handler.move(msg);
+            }
+            case BATCH -> {
+                BatchMessage batch = gson.fromJson(json, BatchMessage.class);
+                for (JsonObject msg : batch.getMessages()) {
+                    handleIncomingMessage(msg);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks the server for the whole game again, after a move that didn't line up
+     */
+    public void requestResync() {
+        try {
+            sendCommand(new UserGameCommand(UserGameCommand.CommandType.RESYNC, authToken, gameID));
+        } catch (ResponseException e) {
+            System.out.println("Failed sending RESYNC: " + e.getMessage());
+        }
+    }
+
+    private void handleIncomingMessage(ServerMessage message){
+        switch (message) {
+            case LoadGameMessage msg -> handler.loadGame(msg);
+            case MoveMessage msg -> handler.move(msg);
+            case ErrorMessage msg -> handler.error(msg);
+            case NotificationMessage msg -> handler.notify(msg);
+            default -> { }
         }
     }
 
     public void sendCommand(UserGameCommand cmd) throws ResponseException{
         try{
+            if (BINARY) {
+                // the server remembers the token sent with CONNECT
+                boolean withToken = cmd.getCommandType() == UserGameCommand.CommandType.CONNECT;
+                session.getBasicRemote().sendBinary(ByteBuffer.wrap(BinaryCodec.encodeCommand(cmd, withToken)));
+                return;
+            }
             String json = gson.toJson(cmd);
             session.getBasicRemote().sendText(json);
         } catch(Exception e){
@@ -1,9 +1,12 @@
 package websocket;
 
 import chess.ChessGame;
+import chess.ChessGameCodec;
+import chess.InvalidMoveException;
 import client.ChessClient;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
 import websocket.messages.NotificationMessage;
 
 public class ClientNotificationHandler implements NotificationHandler{
@@ -24,6 +27,43 @@ public class ClientNotificationHandler implements NotificationHandler{
         }
     }
 
+    @Override
+    public void move(MoveMessage message) {
+        ChessGame current = client.getGame();
+        if (current != null && message.getSequence() <= current.getPly()){
+            return; // already have it
+        }
+        if (current == null || message.getSequence() != current.getPly() + 1){
+            resync();
+            return;
+        }
+
+        // moved on a copy so the board being shown never changes halfway through a move
+        ChessGame next = ChessGameCodec.decode(ChessGameCodec.encode(current));
+        try {
+            next.makeMove(message.getMove());
+        } catch (InvalidMoveException e) {
+            resync();
+            return;
+        }
+        if (next.getZobristKey() != message.getZobristKey()){
+            resync();
+            return;
+        }
+        client.updateGame(next);
+        if (client.getGameUI() != null){
+            System.out.println("\n");
+            client.getGameUI().render();
+        }
+    }
+
+    private void resync() {
+        var ws = client.getWebsocket();
+        if (ws != null){
+            ws.requestResync();
+        }
+    }
+
     @Override
     public void notify(NotificationMessage message) {
         var text = "\n"+message.getMessage()+ "\n";
@@ -2,12 +2,15 @@ package websocket;
 
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
 import websocket.messages.NotificationMessage;
 
 public interface NotificationHandler {
 
     void loadGame(LoadGameMessage message);
 
+    void move(MoveMessage message);
+
     void notify(NotificationMessage message);
 
     void error(ErrorMessage message);
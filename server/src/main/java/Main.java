@@ -1,11 +1,15 @@
 import chess.*;
+import dataaccess.MySqlGameEventBus;
 import server.Server;
 
 public class Main {
-    public static void main(String[] args) {
-        Server server = new Server();
-        server.run(8080);
+    // run more than one with -Dchess.events=mysql and different ports to share games between them
+    public static void main(String[] args) throws Exception {
+        int port = (args.length > 0)? Integer.parseInt(args[0]) : 8080;
+        Server server = "mysql".equalsIgnoreCase(System.getProperty("chess.events"))
+                ? new Server(new MySqlGameEventBus()) : new Server();
+        server.run(port);
 
         System.out.println("♕ 240 Chess Server");
     }
-}
\ No newline at end of file
+}
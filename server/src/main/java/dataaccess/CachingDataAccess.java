@@ -0,0 +1,220 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessGameCodec;
+import chess.ChessMove;
+import datamodel.*;
+import exception.DataAccessException;
+import exception.ResponseException;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Keeps recently used games in memory in front of another {@link DataAccess}.
+ * <p>
+ * A cached {@link GameData} holds the live {@link ChessGame} that moves are made
+ * on, so a game being played is read from the delegate once and after that only
+ * written. Only {@link #getLiveGame} hands that instance out. {@link #getGame}
+ * decodes a copy of the board as of its last write, since analysing the live board
+ * makes and unmakes moves on it. Writes always go through to the delegate first. Changes to who is
+ * seated or whether the game is over evict the game, so its next read reloads it.
+ * <p>
+ * Auth tokens are cached for a fixed time after they are read, and tokens that
+ * were not found are remembered for a few seconds so repeated bad tokens don't
+ * each cost a query. Logging out evicts the token at once, on every server.
+ */
+public class CachingDataAccess implements DataAccess {
+    private static final int GAME_CACHE_SIZE = 10_000;
+    private static final Duration GAME_IDLE_TIMEOUT = Duration.ofMinutes(30);
+    private static final int AUTH_CACHE_SIZE = 50_000;
+    private static final Duration AUTH_TIMEOUT = Duration.ofMinutes(5);
+    private static final int MISSING_AUTH_CACHE_SIZE = 10_000;
+    private static final Duration MISSING_AUTH_TIMEOUT = Duration.ofSeconds(5);
+
+    private final DataAccess delegate;
+    private final ExpiringCache<Integer, CachedGame> games;
+    private final ExpiringCache<String, AuthData> auths =
+            new ExpiringCache<>(AUTH_CACHE_SIZE, AUTH_TIMEOUT, false);
+    private final ExpiringCache<String, Boolean> missingAuths =
+            new ExpiringCache<>(MISSING_AUTH_CACHE_SIZE, MISSING_AUTH_TIMEOUT, false);
+
+    public CachingDataAccess(DataAccess delegate) {
+        this(delegate, GAME_CACHE_SIZE, GAME_IDLE_TIMEOUT);
+    }
+
+    public CachingDataAccess(DataAccess delegate, int gameCacheSize, Duration gameIdleTimeout) {
+        this.delegate = delegate;
+        this.games = new ExpiringCache<>(gameCacheSize, gameIdleTimeout, true);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        games.clear();
+        auths.clear();
+        missingAuths.clear();
+    }
+
+    @Override
+    public void createUser(UserData user) {
+        delegate.createUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws ResponseException {
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws ResponseException {
+        if (authToken == null) {
+            return delegate.getAuth(null);
+        }
+        if (missingAuths.get(authToken) != null) {
+            return null;
+        }
+        return auths.get(authToken, token -> {
+            AuthData auth = delegate.getAuth(token);
+            if (auth == null) {
+                missingAuths.put(token, Boolean.TRUE);
+            }
+            return auth;
+        });
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws ResponseException {
+        try {
+            delegate.deleteAuth(authToken);
+        } finally {
+            if (authToken != null) {
+                auths.invalidate(authToken);
+            }
+        }
+    }
+
+    @Override
+    public void evictAuth(String authToken) {
+        auths.invalidate(authToken);
+    }
+
+    @Override
+    public void createAuth(AuthData auth) {
+        delegate.createAuth(auth);
+        missingAuths.invalidate(auth.authToken());
+    }
+
+    @Override
+    public int createGame(String gameName) {
+        return delegate.createGame(gameName);
+    }
+
+    @Override
+    public ListGamesResponse listGames(GameFilter filter, int afterGameID, int limit) throws ResponseException {
+        return delegate.listGames(filter, afterGameID, limit);
+    }
+
+    @Override
+    public void joinGame(String username, GameSpec gameSpec) throws ResponseException {
+        try {
+            delegate.joinGame(username, gameSpec);
+        } finally {
+            games.invalidate(gameSpec.gameID());
+        }
+    }
+
+    // the game moves are made on, and its board encoded as of its last write
+    private static final class CachedGame {
+        private final GameData live;
+        private volatile byte[] snapshot;
+
+        CachedGame(GameData live) {
+            this.live = live;
+            takeSnapshot();
+        }
+
+        void takeSnapshot() {
+            snapshot = (live.game() == null)? null : ChessGameCodec.encode(live.game());
+        }
+
+        GameData copy() {
+            byte[] board = snapshot;
+            return new GameData(live.gameID(), live.whiteUsername(), live.blackUsername(), live.gameName(),
+                    (board == null)? null : ChessGameCodec.decode(board), live.gameOver());
+        }
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws ResponseException {
+        CachedGame cached = cached(gameID);
+        return (cached == null)? null : cached.copy();
+    }
+
+    @Override
+    public GameData getLiveGame(int gameID) throws ResponseException {
+        CachedGame cached = cached(gameID);
+        return (cached == null)? null : cached.live;
+    }
+
+    private CachedGame cached(int gameID) throws ResponseException {
+        return games.get(gameID, id -> {
+            GameData game = delegate.getGame(id);
+            return (game == null)? null : new CachedGame(game);
+        });
+    }
+
+    @Override
+    public void leaveGame(String username, int gameID) throws DataAccessException {
+        try {
+            delegate.leaveGame(username, gameID);
+        } finally {
+            games.invalidate(gameID);
+        }
+    }
+
+    @Override
+    public void resignGame(String username, int gameID) {
+        try {
+            delegate.resignGame(username, gameID);
+        } finally {
+            games.invalidate(gameID);
+        }
+    }
+
+    @Override
+    public void updateGame(GameData game) {
+        try {
+            delegate.updateGame(game);
+        } catch (RuntimeException ex) {
+            games.invalidate(game.gameID());
+            throw ex;
+        }
+        games.put(game.gameID(), new CachedGame(game));
+    }
+
+    @Override
+    public void evictGame(int gameID) {
+        games.invalidate(gameID);
+    }
+
+    @Override
+    public void appendMove(int gameID, int ply, ChessMove move) throws ResponseException {
+        try {
+            delegate.appendMove(gameID, ply, move);
+        } catch (ResponseException | RuntimeException ex) {
+            // the cached game already has the move made on it
+            games.invalidate(gameID);
+            throw ex;
+        }
+        CachedGame cached = games.get(gameID);
+        if (cached != null) {
+            cached.takeSnapshot();
+        }
+    }
+
+    @Override
+    public List<ChessMove> getMoves(int gameID) throws ResponseException {
+        return delegate.getMoves(gameID);
+    }
+}
@@ -0,0 +1,291 @@
+package dataaccess;
+
+import exception.DataAccessException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of JDBC connections. Callers borrow with {@link #getConnection()}
+ * and give the connection back by closing it, so existing try-with-resources
+ * blocks work unchanged.
+ * <p>
+ * Idle connections are kept most-recently-used first. Ones that sat idle past the
+ * idle timeout or have been open longer than the max lifetime are closed instead of
+ * handed out, and ones idle longer than the validation interval are checked with
+ * {@link Connection#isValid} first. Waiting for a free slot uses a semaphore rather
+ * than a monitor so blocked virtual threads don't pin their carrier.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    /**
+     * @param maxSize            most connections open at once, borrowed or idle
+     * @param borrowTimeout      how long to wait for a free connection before failing
+     * @param idleTimeout        idle connections older than this are closed
+     * @param maxLifetime        connections older than this are closed when next returned or borrowed
+     * @param validationInterval connections idle longer than this are checked before being handed out
+     * @param maxWaiting         most callers left waiting for a connection; past this, borrowing fails at once
+     */
+    public record Settings(int maxSize, Duration borrowTimeout, Duration idleTimeout,
+                           Duration maxLifetime, Duration validationInterval, int maxWaiting) {
+        public static final Settings DEFAULT = new Settings(10, Duration.ofSeconds(30), Duration.ofMinutes(10),
+                Duration.ofMinutes(30), Duration.ofSeconds(5), 1000);
+    }
+
+    /**
+     * Snapshot of pool usage.
+     *
+     * @param active          connections currently borrowed
+     * @param idle            open connections waiting to be borrowed
+     * @param borrows         total successful borrows
+     * @param averageWaitMillis average time a borrow spent waiting for a free slot
+     * @param maxWaitMillis   longest time a borrow spent waiting for a free slot
+     */
+    public record PoolStats(int active, int idle, long borrows, double averageWaitMillis, double maxWaitMillis) {
+    }
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory factory;
+    private final Settings settings;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Pooled> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory factory, Settings settings) {
+        if (settings.maxSize() < 1) {
+            throw new IllegalArgumentException("pool size must be at least 1");
+        }
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize(), true);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the borrow timeout if all are in use.
+     * Closing the returned connection gives it back to the pool.
+     */
+    public Connection getConnection() throws DataAccessException {
+        if (closed) {
+            throw new DataAccessException("connection pool is closed");
+        }
+        // on virtual threads nothing else bounds how many requests pile up here
+        if (permits.availablePermits() == 0 && permits.getQueueLength() >= settings.maxWaiting()) {
+            throw new DataAccessException("too many callers waiting for a database connection");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(settings.borrowTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new DataAccessException("timed out waiting for a database connection");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("interrupted waiting for a database connection", ex);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulate(waited);
+
+        try {
+            Pooled pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new Pooled(factory.connect());
+            }
+            active.incrementAndGet();
+            borrows.increment();
+            return pooled.lease();
+        } catch (SQLException ex) {
+            permits.release();
+            throw new DataAccessException("failed to get connection", ex);
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    public PoolStats getStats() {
+        long count = borrows.sum();
+        double average = (count == 0)? 0 : waitNanos.sum() / 1e6 / count;
+        return new PoolStats(active.get(), idle.size(), count, average, maxWaitNanos.get() / 1e6);
+    }
+
+    /**
+     * Closes every idle connection and refuses further borrows. Connections still
+     * borrowed are closed as they come back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Pooled pooled; (pooled = idle.pollFirst()) != null; ) {
+            pooled.discard();
+        }
+    }
+
+    private Pooled takeIdle() {
+        evictIdle();
+        long now = System.nanoTime();
+        for (Pooled pooled; (pooled = idle.pollFirst()) != null; ) {
+            if (pooled.isExpired(now)) {
+                pooled.discard();
+            } else if (now - pooled.lastUsed > settings.validationInterval().toNanos() && !pooled.isValid()) {
+                pooled.discard();
+            } else {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    // the least recently used connections sit at the tail
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Pooled oldest; (oldest = idle.peekLast()) != null; ) {
+            if (now - oldest.lastUsed <= settings.idleTimeout().toNanos() && !oldest.isExpired(now)) {
+                return;
+            }
+            if (idle.removeLastOccurrence(oldest)) {
+                oldest.discard();
+            }
+        }
+    }
+
+    private void giveBack(Pooled pooled) {
+        try {
+            if (closed || pooled.isExpired(System.nanoTime()) || !pooled.reset()) {
+                pooled.discard();
+            } else {
+                pooled.lastUsed = System.nanoTime();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    private final class Pooled {
+        private final Connection physical;
+        private final long created = System.nanoTime();
+        private long lastUsed = created;
+
+        Pooled(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+
+        boolean isExpired(long now) {
+            return now - created > settings.maxLifetime().toNanos();
+        }
+
+        boolean isValid() {
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        // undo anything a borrower may have left behind; false if the connection is unusable
+        boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        void discard() {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // already unusable
+            }
+        }
+    }
+
+    /**
+     * Handle given to one borrower. Closing it returns the connection to the pool;
+     * after that every other call fails, so a stale reference can't use a connection
+     * someone else has since borrowed.
+     */
+    private final class Lease implements InvocationHandler {
+        // taken by the first close, from whichever thread makes it, so the connection
+        // and its permit go back exactly once
+        private final AtomicReference<Pooled> pooled;
+
+        Lease(Pooled pooled) {
+            this.pooled = new AtomicReference<>(pooled);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    Pooled returning = pooled.getAndSet(null);
+                    if (returning != null) {
+                        giveBack(returning);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    Pooled current = pooled.get();
+                    return current == null || current.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    Pooled current = pooled.get();
+                    return "pooled " + ((current == null)? "closed connection" : current.physical);
+                }
+                default -> {
+                    Pooled current = pooled.get();
+                    if (current == null) {
+                        throw new SQLException("connection has already been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(current.physical, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
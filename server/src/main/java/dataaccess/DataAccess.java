@@ -1,12 +1,12 @@
 package dataaccess;
 
-import datamodel.AuthData;
-import datamodel.GameData;
-import datamodel.GameSpec;
-import datamodel.UserData;
+import chess.ChessMove;
+import datamodel.*;
 import exception.DataAccessException;
 import exception.ResponseException;
 
+import java.util.List;
+
 public interface DataAccess {
     void clear();
     void createUser(UserData user);
@@ -17,12 +17,56 @@ public interface DataAccess {
     void createAuth(AuthData auth);
 
     int createGame(String gameName);
-    GameData [] listGames(String authToken) throws ResponseException;
+    /**
+     * Lists every game without its board
+     */
+    default GameData [] listGames(String authToken) throws ResponseException {
+        return listGames(GameFilter.ALL, 0, Integer.MAX_VALUE).games();
+    }
+
+    /**
+     * Lists games in gameID order without their boards
+     *
+     * @param afterGameID only games with a higher ID are listed; 0 for the first page
+     * @param limit       most games to return
+     */
+    ListGamesResponse listGames(GameFilter filter, int afterGameID, int limit) throws ResponseException;
     void joinGame(String username, GameSpec gameSpec) throws ResponseException;
 
     GameData getGame(int gameID) throws ResponseException;
+
+    /**
+     * Gets the game to make moves on, which may be the instance kept in memory
+     * rather than a copy. Only one caller at a time may use it.
+     */
+    default GameData getLiveGame(int gameID) throws ResponseException {
+        return getGame(gameID);
+    }
     void leaveGame(String username, int gameID) throws DataAccessException;
     void resignGame(String username, int gameID);
 
     void updateGame(GameData game);
+
+    /**
+     * Drops any copy of the game kept in memory, so the next read loads it from
+     * storage. Used when another server may have changed it.
+     */
+    default void evictGame(int gameID) {
+    }
+
+    /**
+     * Drops any copy of the auth token kept in memory. Used when another server has
+     * logged it out.
+     */
+    default void evictAuth(String authToken) {
+    }
+
+    /**
+     * Records a move in the game's move log. {@link #getGame} replays logged moves
+     * made after the last {@link #updateGame} snapshot.
+     *
+     * @param ply the game's move count once this move is made, starting at 1
+     */
+    void appendMove(int gameID, int ply, ChessMove move) throws ResponseException;
+    List<ChessMove> getMoves(int gameID) throws ResponseException;
 }
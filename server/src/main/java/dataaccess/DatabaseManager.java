@@ -3,6 +3,7 @@ package dataaccess;
 import exception.DataAccessException;
 
 import java.sql.*;
+import java.time.Duration;
 import java.util.Properties;
 
 public class DatabaseManager {
@@ -10,6 +11,7 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    private static ConnectionPool pool;
 
     /*
      * Load the database information for the db.properties file.
@@ -32,10 +34,11 @@ public class DatabaseManager {
     }
 
     /**
-     * Create a connection to the database and sets the catalog based upon the
+     * Borrow a pooled connection to the database, with the catalog set based upon the
      * properties specified in db.properties. Connections to the database should
-     * be short-lived, and you must close the connection when you are done with it.
-     * The easiest way to do that is with a try-with-resource block.
+     * be short-lived, and you must close the connection when you are done with it,
+     * which hands it back to the pool. The easiest way to do that is with a
+     * try-with-resource block.
      * <br/>
      * <code>
      * try (var conn = DatabaseManager.getConnection()) {
@@ -44,14 +47,21 @@ public class DatabaseManager {
      * </code>
      */
     static Connection getConnection() throws DataAccessException {
-        try {
-            //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            return conn;
-        } catch (SQLException ex) {
-            throw new DataAccessException("failed to get connection", ex);
-        }
+        return pool.getConnection();
+    }
+
+    /**
+     * @return how many connections are in use and idle, and how long callers have waited for one
+     */
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    private static Connection openConnection() throws SQLException {
+        //do not wrap the following line with a try-with-resources
+        var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
+        conn.setCatalog(databaseName);
+        return conn;
     }
 
     private static void loadPropertiesFromResources() {
@@ -75,5 +85,20 @@ public class DatabaseManager {
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
         connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+
+        var defaults = ConnectionPool.Settings.DEFAULT;
+        var settings = new ConnectionPool.Settings(
+                Integer.parseInt(props.getProperty("db.pool.size", String.valueOf(defaults.maxSize()))),
+                seconds(props, "db.pool.waitSeconds", defaults.borrowTimeout()),
+                seconds(props, "db.pool.idleSeconds", defaults.idleTimeout()),
+                seconds(props, "db.pool.lifetimeSeconds", defaults.maxLifetime()),
+                seconds(props, "db.pool.validateSeconds", defaults.validationInterval()),
+                Integer.parseInt(props.getProperty("db.pool.maxWaiting", String.valueOf(defaults.maxWaiting()))));
+        pool = new ConnectionPool(DatabaseManager::openConnection, settings);
+    }
+
+    private static Duration seconds(Properties props, String key, Duration fallback) {
+        var value = props.getProperty(key);
+        return (value == null)? fallback : Duration.ofSeconds(Long.parseLong(value.trim()));
     }
 }
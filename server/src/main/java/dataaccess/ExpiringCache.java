@@ -0,0 +1,182 @@
+package dataaccess;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent map whose entries expire after a fixed time and whose size is
+ * bounded. Expiry is measured from the last write, or from the last read as well
+ * when {@code refreshOnRead} is set. Once full, the least recently used entries
+ * are evicted first, where reads only count as use when {@code refreshOnRead} is
+ * set. A read only moves an entry to the back of the eviction order once it has
+ * drifted into the older half, so an entry read constantly costs a queue node
+ * every half cache's worth of writes rather than one per read.
+ */
+public class ExpiringCache<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<K, V, E extends Exception> {
+        /**
+         * @return the value for the key, or null to leave it uncached
+         */
+        V load(K key) throws E;
+    }
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    // use order for eviction; holds stale nodes for replaced, removed or requeued
+    // entries, which are skipped since their stamp no longer matches
+    private final ConcurrentLinkedQueue<Node<K>> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong stamps = new AtomicLong();
+    // serializes loads of the same key; locks rather than monitors so a virtual
+    // thread waiting on a slow load doesn't pin its carrier
+    private final ReentrantLock[] loadLocks = new ReentrantLock[32];
+    private final int maxSize;
+    private final long ttlNanos;
+    private final boolean refreshOnRead;
+
+    private static final class Entry<V> {
+        final V value;
+        // only changed inside the map's compute for the key
+        volatile long stamp;
+        volatile long expiresAt;
+
+        Entry(V value, long stamp, long expiresAt) {
+            this.value = value;
+            this.stamp = stamp;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private record Node<K>(K key, long stamp) {
+    }
+
+    public ExpiringCache(int maxSize, Duration ttl, boolean refreshOnRead) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshOnRead = refreshOnRead;
+        for (int i = 0; i < loadLocks.length; i++) {
+            loadLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @return the cached value, or null if it is missing or expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.expiresAt >= 0) {
+            entries.remove(key, entry);
+            return null;
+        }
+        if (refreshOnRead) {
+            entry.expiresAt = now + ttlNanos;
+            if (stamps.get() - entry.stamp > maxSize / 2) {
+                requeue(key, entry);
+            }
+        }
+        return entry.value;
+    }
+
+    /**
+     * Gets the cached value, loading and caching it if missing. Concurrent callers
+     * for the same key wait for a single load rather than each loading their own copy.
+     */
+    public <E extends Exception> V get(K key, Loader<K, V, E> loader) throws E {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            cached = get(key);
+            if (cached != null) {
+                return cached;
+            }
+            V value = loader.load(key);
+            if (value != null) {
+                put(key, value);
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, newEntry(key, value));
+        evictOverflow();
+    }
+
+    /**
+     * Removes the key, waiting for any load of it in progress so a value read
+     * before the caller's change can't be cached after it
+     */
+    public void invalidate(K key) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        order.clear();
+        queued.set(0);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private ReentrantLock lockFor(K key) {
+        return loadLocks[(key.hashCode() & 0x7FFFFFFF) % loadLocks.length];
+    }
+
+    private Entry<V> newEntry(K key, V value) {
+        long stamp = stamps.incrementAndGet();
+        order.add(new Node<>(key, stamp));
+        queued.incrementAndGet();
+        return new Entry<>(value, stamp, System.nanoTime() + ttlNanos);
+    }
+
+    private void requeue(K key, Entry<V> entry) {
+        long stamp = stamps.incrementAndGet();
+        boolean[] moved = {false};
+        entries.computeIfPresent(key, (k, current) -> {
+            if (current == entry && current.stamp < stamp) {
+                current.stamp = stamp;
+                moved[0] = true;
+            }
+            return current;
+        });
+        if (moved[0]) {
+            order.add(new Node<>(key, stamp));
+            queued.incrementAndGet();
+            evictOverflow();
+        }
+    }
+
+    private void evictOverflow() {
+        while (entries.size() > maxSize || queued.get() > maxSize * 2) {
+            Node<K> oldest = order.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            entries.computeIfPresent(oldest.key(), (k, entry) -> (entry.stamp == oldest.stamp())? null : entry);
+        }
+    }
+}
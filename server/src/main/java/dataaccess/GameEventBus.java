@@ -0,0 +1,67 @@
+package dataaccess;
+
+import exception.DataAccessException;
+
+/**
+ * Connects the server nodes that host games from the same database. Every node
+ * has its own bus.
+ * <p>
+ * Events are opaque bytes published for a game and heard by every other node, so
+ * players of one game connected to different nodes see each other's moves.
+ * <p>
+ * Only the node holding a game's lease may change it. A node claims the lease for
+ * one change and releases it straight after, so players of one game on different
+ * nodes take turns without waiting; the lease time only matters when a node stops
+ * without releasing. Every change to a game, over HTTP as well as WebSocket, holds
+ * the lease and publishes an event, so the last holder is always the last node to
+ * change the game. Reading a game needs no lease.
+ * <p>
+ * Logouts are published too, so every node drops sessions and cached tokens that
+ * belong to a token logged out on another node.
+ */
+public interface GameEventBus extends AutoCloseable {
+
+    interface Listener {
+        void onEvent(int gameID, byte[] event);
+
+        /**
+         * Called when an auth token has been logged out on another node
+         */
+        default void onLogout(String authToken) {
+        }
+    }
+
+    /**
+     * Sends an event to the other nodes; this node's listeners don't hear it
+     */
+    void publish(int gameID, byte[] event) throws DataAccessException;
+
+    /**
+     * Tells the other nodes an auth token has been logged out
+     */
+    void publishLogout(String authToken) throws DataAccessException;
+
+    /**
+     * Adds a listener for events published by other nodes
+     */
+    void subscribe(Listener listener);
+
+    /**
+     * Takes this node's lease on a game, waiting for another node to release it or
+     * for its lease to run out if need be
+     *
+     * @return true if another node may have changed the game since this node last
+     * held it, so any copy of it kept in memory is stale
+     * @throws DataAccessException if another node kept the game too long to wait for
+     */
+    boolean claim(int gameID) throws DataAccessException;
+
+    /**
+     * Gives up this node's lease on a game, if it holds it, while remembering that
+     * this node was the last to change it
+     */
+    void release(int gameID);
+
+    @Override
+    void close();
+}
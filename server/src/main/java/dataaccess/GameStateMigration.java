@@ -0,0 +1,112 @@
+package dataaccess;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessGameCodec;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Moves the GameData.game column from Gson JSON to {@link ChessGameCodec} bytes.
+ * <p>
+ * The encoded games go into a new column first and only replace the JSON column once
+ * every row has been converted, so a migration cut short is simply redone on the
+ * next start.
+ */
+final class GameStateMigration {
+
+    private GameStateMigration() {
+    }
+
+    static void migrate(Connection conn) throws SQLException {
+        if (!"json".equalsIgnoreCase(columnType(conn, "game"))) {
+            return;
+        }
+        if (columnType(conn, "gameState") == null) {
+            try (var ps = conn.prepareStatement("ALTER TABLE GameData ADD COLUMN gameState VARBINARY(64)")) {
+                ps.executeUpdate();
+            }
+        }
+
+        try (PreparedStatement select = conn.prepareStatement("SELECT gameID, game FROM GameData");
+             PreparedStatement update = conn.prepareStatement("UPDATE GameData SET gameState = ? WHERE gameID = ?");
+             ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                String json = rs.getString("game");
+                update.setBytes(1, (json == null)? null : ChessGameCodec.encode(parseLegacy(json)));
+                update.setInt(2, rs.getInt("gameID"));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+
+        try (var ps = conn.prepareStatement("ALTER TABLE GameData DROP COLUMN game, RENAME COLUMN gameState TO game")) {
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads a game Gson wrote, either with the original board (an 8x8 array of
+     * pieces) or the bitboard one (one mask per colored piece type).
+     */
+    static ChessGame parseLegacy(String json) {
+        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+        ChessGame game = new ChessGame();
+        ChessBoard board = new ChessBoard();
+        JsonObject squares = root.getAsJsonObject("squares");
+
+        if (squares.has("squares")) {
+            JsonArray rows = squares.getAsJsonArray("squares");
+            for (int row = 0; row < rows.size(); row++) {
+                JsonArray cols = rows.get(row).getAsJsonArray();
+                for (int col = 0; col < cols.size(); col++) {
+                    JsonElement cell = cols.get(col);
+                    if (!cell.isJsonNull()) {
+                        JsonObject piece = cell.getAsJsonObject();
+                        board.addPiece(new ChessPosition(row + 1, col + 1), new ChessPiece(
+                                ChessGame.TeamColor.valueOf(piece.get("pieceColor").getAsString()),
+                                ChessPiece.PieceType.valueOf(piece.get("type").getAsString())));
+                    }
+                }
+            }
+        } else {
+            JsonArray masks = squares.getAsJsonArray("pieces");
+            ChessPiece.PieceType[] types = ChessPiece.PieceType.values();
+            for (int i = 0; i < masks.size(); i++) {
+                ChessPiece piece = new ChessPiece(ChessGame.TeamColor.values()[i / types.length], types[i % types.length]);
+                for (long bits = masks.get(i).getAsLong(); bits != 0; bits &= bits - 1) {
+                    int square = Long.numberOfTrailingZeros(bits);
+                    board.addPiece(new ChessPosition(square / 8 + 1, square % 8 + 1), piece);
+                }
+            }
+        }
+
+        game.setBoard(board);
+        if (root.has("currentTurn")) {
+            game.setTeamTurn(ChessGame.TeamColor.valueOf(root.get("currentTurn").getAsString()));
+        }
+        return game;
+    }
+
+    private static String columnType(Connection conn, String column) throws SQLException {
+        var statement = """
+                SELECT DATA_TYPE FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'GameData' AND COLUMN_NAME = ?
+                """;
+        try (var ps = conn.prepareStatement(statement)) {
+            ps.setString(1, column);
+            try (var rs = ps.executeQuery()) {
+                return rs.next()? rs.getString(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dataaccess;
+
+import exception.DataAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link GameEventBus} for nodes in one process, such as several
+ * servers started on different ports by one test. Nodes made from the same
+ * {@link Hub} hear each other's events and share leases; a bus made on its own is
+ * a single node with nobody to talk to.
+ * <p>
+ * Events are delivered on the publishing thread.
+ */
+public class LocalGameEventBus implements GameEventBus {
+    static final Duration LEASE_TIME = Duration.ofSeconds(3);
+    private static final Duration RETRY_INTERVAL = Duration.ofMillis(20);
+
+    /**
+     * The nodes sharing events and leases
+     */
+    public static final class Hub {
+        private final Duration leaseTime;
+        private final List<LocalGameEventBus> nodes = new CopyOnWriteArrayList<>();
+        private final ConcurrentHashMap<Integer, Lease> leases = new ConcurrentHashMap<>();
+
+        public Hub() {
+            this(LEASE_TIME);
+        }
+
+        public Hub(Duration leaseTime) {
+            this.leaseTime = leaseTime;
+        }
+    }
+
+    private record Lease(LocalGameEventBus holder, long expires) {
+    }
+
+    private final Hub hub;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public LocalGameEventBus() {
+        this(new Hub());
+    }
+
+    public LocalGameEventBus(Hub hub) {
+        this.hub = hub;
+        hub.nodes.add(this);
+    }
+
+    @Override
+    public void publish(int gameID, byte[] event) {
+        for (LocalGameEventBus node : hub.nodes) {
+            if (node != this) {
+                for (Listener listener : node.listeners) {
+                    listener.onEvent(gameID, event);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void publishLogout(String authToken) {
+        for (LocalGameEventBus node : hub.nodes) {
+            if (node != this) {
+                for (Listener listener : node.listeners) {
+                    listener.onLogout(authToken);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean claim(int gameID) throws DataAccessException {
+        long deadline = System.nanoTime() + 2 * hub.leaseTime.toNanos();
+        while (true) {
+            long now = System.nanoTime();
+            Lease[] previous = {null};
+            Lease lease = hub.leases.compute(gameID, (id, current) -> {
+                previous[0] = current;
+                boolean free = current == null || current.holder() == this || current.expires() - now < 0;
+                return free? new Lease(this, now + hub.leaseTime.toNanos()) : current;
+            });
+            if (lease.holder() == this) {
+                return previous[0] == null || previous[0].holder() != this;
+            }
+            if (now - deadline > 0) {
+                throw new DataAccessException("game " + gameID + " is busy on another server");
+            }
+            LockSupport.parkNanos(RETRY_INTERVAL.toNanos());
+        }
+    }
+
+    @Override
+    public void release(int gameID) {
+        long now = System.nanoTime();
+        hub.leases.computeIfPresent(gameID, (id, lease) -> (lease.holder() == this)? new Lease(this, now - 1) : lease);
+    }
+
+    @Override
+    public void close() {
+        hub.nodes.remove(this);
+        hub.leases.values().removeIf(lease -> lease.holder() == this);
+    }
+}
@@ -1,19 +1,34 @@
 package dataaccess;
 
 import chess.ChessGame;
-import datamodel.AuthData;
-import datamodel.GameData;
-import datamodel.GameSpec;
-import datamodel.UserData;
-import exception.DataAccessException;
+import chess.ChessGameCodec;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import datamodel.*;
+import exception.ResponseException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Keeps everything in concurrent maps, safe to use from many threads at once.
+ * Games are kept the way {@link MySqlDataAccess} keeps them: a board written by
+ * {@link #updateGame} plus the moves appended since, replayed onto a fresh copy on
+ * every read, so no caller ever shares a board with another. Every change to a
+ * game is a single atomic replace of its {@link GameData}, so concurrent joins,
+ * leaves and resignations never lose each other's updates. Unlike MySQL, joining a
+ * seat someone else holds fails here instead of overwriting it.
+ */
 public class MemoryDataAccess implements DataAccess{
-    private final Map<String, UserData> users = new HashMap<>();
-    private final Map<String, AuthData> authTokens = new HashMap<>();
-    private final Map<Integer, GameData> games = new HashMap<>();
+    private final Map<String, UserData> users = new ConcurrentHashMap<>();
+    private final Map<String, AuthData> authTokens = new ConcurrentHashMap<>();
+    // sorted so listGames can start from its cursor; the boards here are never
+    // handed out or changed, only copied
+    private final ConcurrentNavigableMap<Integer, GameData> games = new ConcurrentSkipListMap<>();
+    private final Map<Integer, ConcurrentNavigableMap<Integer, ChessMove>> moves = new ConcurrentHashMap<>();
 
     private final AtomicInteger gameIDCounter = new AtomicInteger();
     public int nextID(){
@@ -25,84 +40,158 @@ public class MemoryDataAccess implements DataAccess{
         users.clear();
         authTokens.clear();
         games.clear();
+        moves.clear();
     }
 
     @Override
     public void createUser(UserData user) {
-        users.put(user.username(), user);
+        if (users.putIfAbsent(user.username(), user) != null) {
+            throw new RuntimeException(new ResponseException("Duplicate entry '" + user.username() + "' for username"));
+        }
     }
 
     @Override
     public UserData getUser(String username) {
-        return users.get(username);
+        return (username == null)? null : users.get(username);
     }
 
     @Override
     public AuthData getAuth(String authToken) {
-        return authTokens.get(authToken);
+        return (authToken == null)? null : authTokens.get(authToken);
     }
     @Override
-    public void deleteAuth(String authToken) {
-        authTokens.remove(authToken);
+    public void deleteAuth(String authToken) throws ResponseException {
+        if (authToken == null || authTokens.remove(authToken) == null) {
+            throw new ResponseException("authToken not found");
+        }
     }
     @Override
     public void createAuth(AuthData auth) {
-        authTokens.put(auth.authToken(), auth);
+        if (authTokens.putIfAbsent(auth.authToken(), auth) != null) {
+            throw new RuntimeException(new ResponseException("Duplicate entry for authToken"));
+        }
     }
 
 @Override
 public int createGame(String gameName) {
     int gameID = nextID();
-    GameData gameData = new GameData(gameID, null, null, gameName, new ChessGame(), false);
+    GameData gameData = new GameData(gameID, null, null, gameName, copyOf(new ChessGame()), false);
     games.put(gameID, gameData);
     return gameData.gameID();
 }
 
     @Override
-    public GameData[] listGames(String authToken) {
-
-        List<GameData> gameList = new ArrayList<>();
-
-        for (Map.Entry<Integer, GameData> entry: games.entrySet()){
-            GameData g = entry.getValue();
-            gameList.add(new GameData(entry.getKey(),
-                    g.whiteUsername(),
-                    g.blackUsername(),
-                    g.gameName(),
-                    g.game(),
-                    g.gameOver()));
+    public ListGamesResponse listGames(GameFilter filter, int afterGameID, int limit) {
+        List<GameData> page = games.tailMap(afterGameID, false).values().stream()
+                .filter(filter::matches)
+                .limit(limit + 1L)
+                .map(g -> new GameData(g.gameID(), g.whiteUsername(), g.blackUsername(), g.gameName(), null, g.gameOver()))
+                .toList();
+        if (page.size() > limit) {
+            page = page.subList(0, limit);
+            return new ListGamesResponse(page.toArray(new GameData[0]), page.getLast().gameID());
         }
-        return gameList.toArray(new GameData[0]);
+        return new ListGamesResponse(page.toArray(new GameData[0]), null);
     }
 
     @Override
-    public GameData getGame(int gameID) {
-        return games.get(gameID);
+    public GameData getGame(int gameID) throws ResponseException {
+        GameData stored = games.get(gameID);
+        if (stored == null) {
+            return null;
+        }
+        ChessGame game = copyOf(stored.game());
+        if (game != null) {
+            replayTail(gameID, game);
+        }
+        return new GameData(gameID, stored.whiteUsername(), stored.blackUsername(), stored.gameName(), game, stored.gameOver());
     }
 
-    @Override
-    public void leaveGame(String username, int gameID) throws DataAccessException {
+    // plays the moves logged since the game's board was written
+    private void replayTail(int gameID, ChessGame game) throws ResponseException {
+        var log = moves.get(gameID);
+        if (log == null) {
+            return;
+        }
+        for (var entry : log.tailMap(game.getPly(), false).entrySet()) {
+            if (entry.getKey() != game.getPly() + 1) {
+                throw new ResponseException(String.format("move log is missing ply %d", game.getPly() + 1));
+            }
+            try {
+                game.makeMove(entry.getValue());
+            } catch (InvalidMoveException e) {
+                throw new ResponseException(String.format("move log has an invalid move at ply %d", entry.getKey()));
+            }
+        }
+    }
 
+    private static ChessGame copyOf(ChessGame game) {
+        return (game == null)? null : ChessGameCodec.decode(ChessGameCodec.encode(game));
     }
 
     @Override
-    public void resignGame(String username, int gameID) {
+    public void leaveGame(String username, int gameID) {
+        games.computeIfPresent(gameID, (id, g) -> new GameData(id,
+                Objects.equals(g.whiteUsername(), username)? null : g.whiteUsername(),
+                Objects.equals(g.blackUsername(), username)? null : g.blackUsername(),
+                g.gameName(), g.game(), g.gameOver()));
+    }
 
+    @Override
+    public void resignGame(String username, int gameID) {
+        games.computeIfPresent(gameID, (id, g) ->
+                new GameData(id, g.whiteUsername(), g.blackUsername(), g.gameName(), g.game(), true));
     }
 
+    // like the MySQL update, only the board and whether the game is over are written
     @Override
     public void updateGame(GameData game) {
+        ChessGame board = copyOf(game.game());
+        games.computeIfPresent(game.gameID(), (id, g) ->
+                new GameData(id, g.whiteUsername(), g.blackUsername(), g.gameName(), board, game.gameOver()));
+    }
 
+    @Override
+    public void appendMove(int gameID, int ply, ChessMove move) throws ResponseException {
+        if (!games.containsKey(gameID)) {
+            throw new ResponseException("unable to record move: no game " + gameID);
+        }
+        var log = moves.computeIfAbsent(gameID, id -> new ConcurrentSkipListMap<>());
+        if (log.putIfAbsent(ply, move) != null) {
+            throw new ResponseException("unable to record move: ply " + ply + " of game " + gameID + " already recorded");
+        }
+    }
+
+    @Override
+    public List<ChessMove> getMoves(int gameID) {
+        var log = moves.get(gameID);
+        return (log == null)? List.of() : List.copyOf(log.values());
     }
 
 
     @Override
-    public void joinGame(String username, GameSpec gameSpec) {
-        var game = games.get(gameSpec.gameID());
-        if (Objects.equals(gameSpec.playerColor().toLowerCase(), "white")){
-            games.put(game.gameID(),new GameData(game.gameID(), username, game.blackUsername(), game.gameName(), game.game(), game.gameOver()));
-        } else{
-            games.put(game.gameID(),new GameData(game.gameID(), game.whiteUsername(), username, game.gameName(), game.game(), game.gameOver()));
+    public void joinGame(String username, GameSpec gameSpec) throws ResponseException {
+        String color = gameSpec.playerColor();
+        if (color == null || color.equalsIgnoreCase("observer")){
+            return;
+        }
+        boolean white = color.equalsIgnoreCase("white");
+        if (!white && !color.equalsIgnoreCase("black")){
+            throw new ResponseException("Invalid color");
+        }
+
+        // the function may be retried, so it only builds the new value; whether the
+        // seat was won is read off the result
+        var game = games.computeIfPresent(gameSpec.gameID(), (id, g) -> {
+            String seated = white? g.whiteUsername() : g.blackUsername();
+            if (seated != null) {
+                return g;
+            }
+            return white? new GameData(id, username, g.blackUsername(), g.gameName(), g.game(), g.gameOver())
+                    : new GameData(id, g.whiteUsername(), username, g.gameName(), g.game(), g.gameOver());
+        });
+        if (game != null && !username.equals(white? game.whiteUsername() : game.blackUsername())){
+            throw new ResponseException("color already taken");
         }
     }
 }
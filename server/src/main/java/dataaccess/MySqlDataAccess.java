@@ -1,11 +1,10 @@
 package dataaccess;
 
 import chess.ChessGame;
-import com.google.gson.Gson;
-import datamodel.AuthData;
-import datamodel.GameData;
-import datamodel.GameSpec;
-import datamodel.UserData;
+import chess.ChessGameCodec;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import datamodel.*;
 import exception.DataAccessException;
 import exception.ResponseException;
 
@@ -27,6 +26,7 @@ public class MySqlDataAccess implements DataAccess {
              Statement stmt = conn.createStatement()){
             stmt.execute("SET FOREIGN_KEY_CHECKS =0");
 
+            stmt.executeUpdate("DELETE FROM GameMoves;");
             stmt.executeUpdate("DELETE FROM GameData;");
             stmt.executeUpdate("DELETE FROM AuthData;");
             stmt.executeUpdate("DELETE FROM UserData;");
@@ -122,34 +122,47 @@ public class MySqlDataAccess implements DataAccess {
     public int createGame(String gameName) {
         var statement ="INSERT INTO GameData (whiteUsername, blackUsername, gameName, game, gameOver) VALUES(?, ?, ?, ?, ?)";
         try {
-            ChessGame game = new ChessGame();
-            String gameJson = new Gson().toJson(game);
+            byte[] game = ChessGameCodec.encode(new ChessGame());
 
-            return executeUpdate(statement,null, null, gameName, gameJson, false);
+            return executeUpdate(statement,null, null, gameName, game, false);
         } catch (ResponseException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public GameData[] listGames(String authToken) throws ResponseException {
-        var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, game, gameOver FROM GameData; ";
+    public ListGamesResponse listGames(GameFilter filter, int afterGameID, int limit) throws ResponseException {
+        // only the lobby columns; boards are left for getGame
+        var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, gameOver FROM GameData WHERE gameID > ?"
+                + switch (filter) {
+                    case ALL -> "";
+                    case OPEN -> " AND gameOver = FALSE AND (whiteUsername IS NULL OR blackUsername IS NULL)";
+                    case ACTIVE -> " AND gameOver = FALSE AND whiteUsername IS NOT NULL AND blackUsername IS NOT NULL";
+                    case FINISHED -> " AND gameOver = TRUE";
+                }
+                + " ORDER BY gameID LIMIT ?";
         try(Connection conn = DatabaseManager.getConnection();
-            PreparedStatement ps = conn.prepareStatement(statement);
-            ResultSet rs = ps.executeQuery()){
+            PreparedStatement ps = conn.prepareStatement(statement)){
+            ps.setInt(1, afterGameID);
+            // one extra row tells whether there is another page
+            ps.setLong(2, limit + 1L);
             List<GameData> games = new ArrayList<>();
-            Gson gson = new Gson();
-            while (rs.next()){
-                int gameID = rs.getInt("gameID");
-                String whiteUsername = rs.getString("whiteUsername");
-                String blackUsername = rs.getString("blackUsername");
-                String gameName = rs.getString("gameName");
-                String gameJson = rs.getString("game");
-                boolean gameOver = rs.getBoolean("gameOver");
-                ChessGame game = gson.fromJson(gameJson, ChessGame.class);
-                games.add (new GameData(gameID, whiteUsername,blackUsername, gameName, game, gameOver));
+            Integer nextCursor = null;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()){
+                    int gameID = rs.getInt("gameID");
+                    if (games.size() == limit) {
+                        nextCursor = games.getLast().gameID();
+                        break;
+                    }
+                    String whiteUsername = rs.getString("whiteUsername");
+                    String blackUsername = rs.getString("blackUsername");
+                    String gameName = rs.getString("gameName");
+                    boolean gameOver = rs.getBoolean("gameOver");
+                    games.add(new GameData(gameID, whiteUsername,blackUsername, gameName, null, gameOver));
+                }
             }
-            return games.toArray(new GameData[0]);
+            return new ListGamesResponse(games.toArray(new GameData[0]), nextCursor);
         } catch (SQLException e) {
             throw new ResponseException(
                     String.format("unable to connect to user: %s", e.getMessage()));
@@ -199,10 +212,11 @@ public class MySqlDataAccess implements DataAccess {
                     String whiteUsername = rs.getString("whiteUsername");
                     String blackUsername = rs.getString("blackUsername");
                     String gameName = rs.getString("gameName");
-                    String gameJson = rs.getString("game");
+                    ChessGame game = decodeGame(rs.getBytes("game"));
                     boolean gameOver = rs.getBoolean("gameOver");
-                    Gson gson = new Gson();
-                    ChessGame game = gson.fromJson(gameJson, ChessGame.class);
+                    if (game != null) {
+                        replayTail(conn, foundGameID, game);
+                    }
                     return new GameData(foundGameID, whiteUsername,blackUsername, gameName, game, gameOver);
                 } else {
                     return null;
@@ -252,7 +266,6 @@ public class MySqlDataAccess implements DataAccess {
 
     @Override
     public void updateGame(GameData game) {
-        var gson = new Gson();
         String statement = """
                 UPDATE GameData
                 SET game = ?,
@@ -261,8 +274,7 @@ public class MySqlDataAccess implements DataAccess {
                 """;
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(statement)) {
-            String gameJson = gson.toJson(game.game());
-            ps.setString(1, gameJson);
+            ps.setBytes(1, (game.game() == null)? null : ChessGameCodec.encode(game.game()));
             ps.setBoolean(2, game.gameOver());
             ps.setInt(3, game.gameID());
             ps.executeUpdate();
@@ -271,6 +283,74 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
+    @Override
+    public void appendMove(int gameID, int ply, ChessMove move) throws ResponseException {
+        var statement = "INSERT INTO GameMoves (gameID, ply, move) VALUES(?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(statement)) {
+            ps.setInt(1, gameID);
+            ps.setInt(2, ply);
+            ps.setShort(3, ChessGameCodec.encodeMove(move));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new ResponseException(String.format("unable to record move: %s", e.getMessage()));
+        } catch (DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<ChessMove> getMoves(int gameID) throws ResponseException {
+        var statement = "SELECT move FROM GameMoves WHERE gameID = ? ORDER BY ply";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(statement)) {
+            ps.setInt(1, gameID);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<ChessMove> moves = new ArrayList<>();
+                while (rs.next()) {
+                    moves.add(ChessGameCodec.decodeMove(rs.getShort("move")));
+                }
+                return moves;
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(String.format("unable to read moves: %s", e.getMessage()));
+        } catch (DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // plays the moves logged since the game's snapshot was written
+    private void replayTail(Connection conn, int gameID, ChessGame game) throws SQLException, ResponseException {
+        var statement = "SELECT ply, move FROM GameMoves WHERE gameID = ? AND ply > ? ORDER BY ply";
+        try (PreparedStatement ps = conn.prepareStatement(statement)) {
+            ps.setInt(1, gameID);
+            ps.setInt(2, game.getPly());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    replay(game, rs.getInt("ply"), rs.getShort("move"));
+                }
+            }
+        }
+    }
+
+    private static void replay(ChessGame game, int ply, short move) throws ResponseException {
+        if (ply <= game.getPly()) {
+            return;
+        }
+        if (ply != game.getPly() + 1) {
+            throw new ResponseException(String.format("move log is missing ply %d", game.getPly() + 1));
+        }
+        try {
+            game.makeMove(ChessGameCodec.decodeMove(move));
+        } catch (InvalidMoveException | IllegalArgumentException e) {
+            throw new ResponseException(String.format("move log has an invalid move at ply %d", ply));
+        }
+    }
+
+    private static ChessGame decodeGame(byte[] bytes) {
+        return (bytes == null)? null : ChessGameCodec.decode(bytes);
+    }
+
     private int executeUpdate(String statement, Object... params) throws ResponseException {
         try (Connection conn = DatabaseManager.getConnection()) {
             try (PreparedStatement ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
@@ -306,6 +386,7 @@ public class MySqlDataAccess implements DataAccess {
                 case Integer p -> ps.setInt(i + 1, p);
                 case null -> ps.setNull(i + 1, NULL);
                 case Boolean b-> ps.setBoolean(i+1, b);
+                case byte[] b -> ps.setBytes(i + 1, b);
                 default -> {
                 }
             }
@@ -327,7 +408,7 @@ public class MySqlDataAccess implements DataAccess {
               whiteUsername VARCHAR(255),
               blackUsername VARCHAR(255),
               gameName VARCHAR(255),
-              game JSON,
+              game VARBINARY(64),
               gameOver BOOLEAN DEFAULT FALSE,
               PRIMARY KEY (gameID),
               FOREIGN KEY (whiteUsername) REFERENCES UserData(username) ON DELETE SET NULL ON UPDATE CASCADE,
@@ -341,6 +422,16 @@ public class MySqlDataAccess implements DataAccess {
               PRIMARY KEY (authToken),
               FOREIGN KEY (username) REFERENCES UserData(username) ON DELETE CASCADE ON UPDATE CASCADE
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS  GameMoves (
+              gameID INT NOT NULL,
+              ply INT NOT NULL,
+              move SMALLINT NOT NULL,
+              createdAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+              PRIMARY KEY (gameID, ply),
+              FOREIGN KEY (gameID) REFERENCES GameData(gameID) ON DELETE CASCADE
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
             """
     };
 
@@ -352,6 +443,7 @@ public class MySqlDataAccess implements DataAccess {
                     preparedStatement.executeUpdate();
                 }
             }
+            GameStateMigration.migrate(conn);
         } catch (SQLException | DataAccessException ex) {
             throw new ResponseException(
                     String.format("Unable to configure database: %s", ex.getMessage()));
@@ -0,0 +1,271 @@
+package dataaccess;
+
+import exception.DataAccessException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link GameEventBus} for nodes sharing the MySQL database.
+ * <p>
+ * Published events are rows in GameEvents, which every node polls for rows after
+ * the last one it saw. Rows are numbered when inserted but may commit out of order,
+ * so IDs a poll skips over are retried for a while before being given up on as
+ * rolled back. Rows are deleted once every node has had time to read them. A
+ * logout is a row for game 0, which no game has, carrying the token.
+ * <p>
+ * Leases are rows in GameLeases, judged by the database clock. Releasing one sets
+ * it to expire now but keeps the node, so the next claim can tell whether anyone
+ * else changed the game in between.
+ */
+public class MySqlGameEventBus implements GameEventBus {
+    static final Duration LEASE_TIME = Duration.ofSeconds(3);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+    private static final Duration GAP_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration EVENT_LIFETIME = Duration.ofMinutes(1);
+    private static final int POLL_LIMIT = 500;
+    private static final int MAX_GAP = 1000;
+    private static final int LOGOUT = 0;
+
+    private final String node = UUID.randomUUID().toString();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // only touched by the polling thread
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private long lastEventID;
+    private long lastPruned = System.nanoTime();
+    private final Thread poller;
+    private volatile boolean closed;
+
+    private record Event(int gameID, byte[] payload) {
+    }
+
+    public MySqlGameEventBus() throws DataAccessException {
+        DatabaseManager.createDatabase();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            for (String statement : createStatements) {
+                try (var preparedStatement = conn.prepareStatement(statement)) {
+                    preparedStatement.executeUpdate();
+                }
+            }
+            try (var ps = conn.prepareStatement("SELECT COALESCE(MAX(eventID), 0) FROM GameEvents");
+                 var rs = ps.executeQuery()) {
+                rs.next();
+                lastEventID = rs.getLong(1);
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("unable to configure game events: " + ex.getMessage(), ex);
+        }
+        poller = Thread.ofVirtual().name("game-events").start(this::poll);
+    }
+
+    @Override
+    public void publish(int gameID, byte[] event) throws DataAccessException {
+        var statement = "INSERT INTO GameEvents (gameID, node, payload) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement ps = conn.prepareStatement(statement)) {
+            ps.setInt(1, gameID);
+            ps.setString(2, node);
+            ps.setBytes(3, event);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw new DataAccessException("unable to publish game event: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void publishLogout(String authToken) throws DataAccessException {
+        publish(LOGOUT, authToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean claim(int gameID) throws DataAccessException {
+        long deadline = System.nanoTime() + 2 * LEASE_TIME.toNanos();
+        while (true) {
+            String previous = tryClaim(gameID);
+            if (previous != null) {
+                return !previous.equals(node);
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new DataAccessException("game " + gameID + " is busy on another server");
+            }
+            LockSupport.parkNanos(POLL_INTERVAL.toNanos());
+        }
+    }
+
+    // the node that held the lease before, "" if none, or null if another node still holds it
+    private String tryClaim(int gameID) throws DataAccessException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (var ps = conn.prepareStatement(
+                    "INSERT IGNORE INTO GameLeases (gameID, node, expiresAt) VALUES (?, '', NOW(3))")) {
+                ps.setInt(1, gameID);
+                ps.executeUpdate();
+            }
+            conn.setAutoCommit(false);
+            String holder;
+            boolean live;
+            try (var ps = conn.prepareStatement(
+                    "SELECT node, expiresAt > NOW(3) AS live FROM GameLeases WHERE gameID = ? FOR UPDATE")) {
+                ps.setInt(1, gameID);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    holder = rs.getString("node");
+                    live = rs.getBoolean("live");
+                }
+            }
+            if (live && !holder.equals(node)) {
+                conn.rollback();
+                return null;
+            }
+            try (var ps = conn.prepareStatement(
+                    "UPDATE GameLeases SET node = ?, expiresAt = NOW(3) + INTERVAL ? MICROSECOND WHERE gameID = ?")) {
+                ps.setString(1, node);
+                ps.setLong(2, LEASE_TIME.toNanos() / 1000);
+                ps.setInt(3, gameID);
+                ps.executeUpdate();
+            }
+            conn.commit();
+            return holder;
+        } catch (SQLException ex) {
+            throw new DataAccessException("unable to claim game " + gameID + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void release(int gameID) {
+        try (Connection conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("UPDATE GameLeases SET expiresAt = NOW(3) WHERE gameID = ? AND node = ?")) {
+            ps.setInt(1, gameID);
+            ps.setString(2, node);
+            ps.executeUpdate();
+        } catch (DataAccessException | SQLException ex) {
+            // the lease runs out on its own
+            System.out.println("[EVENTS ERROR] unable to release game " + gameID + ": " + ex.getMessage());
+        }
+    }
+
+    private void poll() {
+        while (!closed) {
+            try {
+                pollOnce();
+                if (System.nanoTime() - lastPruned > EVENT_LIFETIME.toNanos()) {
+                    prune();
+                    lastPruned = System.nanoTime();
+                }
+            } catch (DataAccessException | SQLException | RuntimeException ex) {
+                System.out.println("[EVENTS ERROR] " + ex.getMessage());
+            }
+            LockSupport.parkNanos(POLL_INTERVAL.toNanos());
+        }
+    }
+
+    private void pollOnce() throws DataAccessException, SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (!gaps.isEmpty()) {
+                var ids = new StringJoiner(",");
+                gaps.keySet().forEach(id -> ids.add(id.toString()));
+                try (var ps = conn.prepareStatement(
+                        "SELECT eventID, gameID, node, payload FROM GameEvents WHERE eventID IN (" + ids + ")")) {
+                    deliver(ps, false);
+                }
+                long now = System.nanoTime();
+                gaps.values().removeIf(giveUp -> now - giveUp > 0);
+            }
+            try (var ps = conn.prepareStatement(
+                    "SELECT eventID, gameID, node, payload FROM GameEvents WHERE eventID > ? ORDER BY eventID LIMIT ?")) {
+                ps.setLong(1, lastEventID);
+                ps.setInt(2, POLL_LIMIT);
+                deliver(ps, true);
+            }
+        }
+    }
+
+    private void deliver(PreparedStatement ps, boolean advance) throws SQLException {
+        List<Event> events = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long eventID = rs.getLong("eventID");
+                if (advance) {
+                    long giveUp = System.nanoTime() + GAP_TIMEOUT.toNanos();
+                    for (long skipped = Math.max(lastEventID + 1, eventID - MAX_GAP); skipped < eventID; skipped++) {
+                        gaps.put(skipped, giveUp);
+                    }
+                    lastEventID = eventID;
+                } else {
+                    gaps.remove(eventID);
+                }
+                if (!node.equals(rs.getString("node"))) {
+                    events.add(new Event(rs.getInt("gameID"), rs.getBytes("payload")));
+                }
+            }
+        }
+        for (Event event : events) {
+            for (Listener listener : listeners) {
+                if (event.gameID() == LOGOUT) {
+                    listener.onLogout(new String(event.payload(), StandardCharsets.UTF_8));
+                } else {
+                    listener.onEvent(event.gameID(), event.payload());
+                }
+            }
+        }
+    }
+
+    private void prune() throws DataAccessException, SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(
+                     "DELETE FROM GameEvents WHERE createdAt < NOW(3) - INTERVAL ? SECOND")) {
+            ps.setLong(1, EVENT_LIFETIME.toSeconds());
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        poller.interrupt();
+        try (Connection conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("UPDATE GameLeases SET expiresAt = NOW(3) WHERE node = ?")) {
+            ps.setString(1, node);
+            ps.executeUpdate();
+        } catch (DataAccessException | SQLException ex) {
+            System.out.println("[EVENTS ERROR] unable to release leases: " + ex.getMessage());
+        }
+    }
+
+    private final String[] createStatements = {
+            """
+            CREATE TABLE IF NOT EXISTS  GameEvents (
+              eventID BIGINT NOT NULL AUTO_INCREMENT,
+              gameID INT NOT NULL,
+              node VARCHAR(36) NOT NULL,
+              payload MEDIUMBLOB NOT NULL,
+              createdAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+              PRIMARY KEY (eventID),
+              INDEX (createdAt)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS  GameLeases (
+              gameID INT NOT NULL,
+              node VARCHAR(36) NOT NULL,
+              expiresAt TIMESTAMP(3) NOT NULL,
+              PRIMARY KEY (gameID)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """
+    };
+}
@@ -0,0 +1,23 @@
+package datamodel;
+
+/**
+ * Which games a lobby listing includes
+ */
+public enum GameFilter {
+    ALL,
+    /** not finished and at least one seat free */
+    OPEN,
+    /** not finished and both seats taken */
+    ACTIVE,
+    FINISHED;
+
+    public boolean matches(GameData game) {
+        boolean seated = game.whiteUsername() != null && game.blackUsername() != null;
+        return switch (this) {
+            case ALL -> true;
+            case OPEN -> !game.gameOver() && !seated;
+            case ACTIVE -> !game.gameOver() && seated;
+            case FINISHED -> game.gameOver();
+        };
+    }
+}
@@ -1,4 +1,8 @@
 package datamodel;
 
-public record ListGamesResponse (GameData[] games) {
+/**
+ * One page of the game list. Pass {@code nextCursor} back to get the following
+ * page; it is null on the last page.
+ */
+public record ListGamesResponse (GameData[] games, Integer nextCursor) {
 }
@@ -1,6 +1,10 @@
 package server;
 
 import com.google.gson.Gson;
+import dataaccess.CachingDataAccess;
+import dataaccess.DataAccess;
+import dataaccess.GameEventBus;
+import dataaccess.LocalGameEventBus;
 import dataaccess.MySqlDataAccess;
 import datamodel.*;
 import exception.DataAccessException;
@@ -14,22 +18,38 @@ import java.util.Map;
 
 public class Server {
     private final Javalin server;
+    private final DataAccess dataAccess;
     private final UserService userService;
     private final WebSocketHandler webSocketHandler;
+    private final GameEventBus events;
 
     public Server() {
-        MySqlDataAccess dataAccess;
+        this(new LocalGameEventBus());
+    }
+
+    /**
+     * @param events connects this server to the others hosting games from the same
+     *               database; closed when the server stops
+     */
+    public Server(GameEventBus events) {
+        this.events = events;
         try {
-            dataAccess = new MySqlDataAccess();
+            dataAccess = new CachingDataAccess(new MySqlDataAccess());
         } catch (ResponseException | DataAccessException e) {
             throw new RuntimeException(e);
         }
         userService = new UserService(dataAccess);
-        webSocketHandler = new WebSocketHandler(userService);
-        server = Javalin.create(config -> config.staticFiles.add("web"));
+        webSocketHandler = new WebSocketHandler(userService, events);
+        server = Javalin.create(config -> {
+            config.staticFiles.add("web");
+            // handlers block on JDBC; a slow database parks virtual threads instead of
+            // using up Jetty's pool. Concurrent queries are capped by the connection pool.
+            config.useVirtualThreads = true;
+        });
         server.ws("/ws", ws-> {
             ws.onConnect(webSocketHandler);
             ws.onMessage(webSocketHandler);
+            ws.onBinaryMessage(webSocketHandler);
             ws.onClose(webSocketHandler);
         });
 
@@ -67,7 +87,6 @@ public class Server {
     private void clear(Context ctx){
         var serializer = new Gson();
         try {
-            MySqlDataAccess dataAccess = new MySqlDataAccess();
             dataAccess.clear();
             ctx.status(200).result(serializer.toJson(null));
         } catch (Exception ex) {
@@ -155,14 +174,38 @@ public class Server {
         var serializer = new Gson();
         try {
             String authToken = ctx.header("authorization");
-            var games = userService.listGames(authToken);
-            ctx.status(200).result(serializer.toJson(Map.of("games", games)));
+            var filter = ctx.queryParam("filter");
+            var page = userService.listGames(authToken,
+                    (filter == null)? null : parseFilter(filter),
+                    intQueryParam(ctx, "cursor"),
+                    intQueryParam(ctx, "limit"));
+            ctx.status(200).result(serializer.toJson(page));
 
         } catch (Exception ex){
             handleException(ctx, ex);
         }
     }
 
+    private static GameFilter parseFilter(String filter) throws Exception {
+        try {
+            return GameFilter.valueOf(filter.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new Exception("bad request - unknown filter " + filter);
+        }
+    }
+
+    private static Integer intQueryParam(Context ctx, String name) throws Exception {
+        var value = ctx.queryParam(name);
+        if (value == null || value.isBlank()){
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new Exception("bad request - " + name + " must be a number");
+        }
+    }
+
     private void getGame(Context ctx){
         var serializer = new Gson();
         try {
@@ -182,7 +225,7 @@ public class Server {
             String authToken = ctx.header("authorization");
             var gameSpec = serializer.fromJson(ctx.body(), GameSpec.class);
 
-            userService.joinGame(authToken, gameSpec);
+            webSocketHandler.change(gameSpec.gameID(), () -> userService.joinGame(authToken, gameSpec));
             ctx.status(200).result("{}");
         } catch (Exception ex){
             int statusCode;
@@ -215,7 +258,11 @@ public class Server {
                 req = new LeaveResignRequest(authToken, req.gameID());
             }
 //            int gameID = Integer.parseInt(ctx.pathParam("id"));
-            userService.leaveGame(req);
+            var leave = req;
+            webSocketHandler.change(req.gameID(), () -> {
+                userService.leaveGame(leave);
+                return null;
+            });
             ctx.status(200).result("{}");
         } catch(Exception ex){
             handleException(ctx, ex);
@@ -234,7 +281,11 @@ public class Server {
                 req = new LeaveResignRequest(authToken, req.gameID());
             }
 //            int gameID = Integer.parseInt(ctx.pathParam("id"));
-            userService.resignGame(req);
+            var resign = req;
+            webSocketHandler.change(req.gameID(), () -> {
+                userService.resignGame(resign);
+                return null;
+            });
             ctx.status(200).result("{}");
         } catch(Exception ex){
             handleException(ctx, ex);
@@ -248,5 +299,7 @@ public class Server {
 
     public void stop() {
         server.stop();
+        webSocketHandler.stop();
+        events.close();
     }
 }
@@ -6,25 +6,51 @@ import datamodel.*;
 import exception.ResponseException;
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class UserService {
+    // a game is written in full every this many moves; moves in between only go to the move log
+    static final int SNAPSHOT_INTERVAL = 20;
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500;
+    // BCrypt is pure CPU, and virtual threads only yield when they block, so hashing
+    // is capped at half the cores to leave carriers free for game traffic
+    static final int PASSWORD_HASH_PERMITS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
     private final DataAccess dataAccess;
+    private final Semaphore passwordHashing = new Semaphore(PASSWORD_HASH_PERMITS, true);
+    private final List<Consumer<String>> logoutListeners = new CopyOnWriteArrayList<>();
 
     public UserService(DataAccess dataAccess){
         this.dataAccess = dataAccess;
     }
 
     String makeUserPassword(String clearTextPassword) {
-        return BCrypt.hashpw(clearTextPassword, BCrypt.gensalt());
+        return hashing(() -> BCrypt.hashpw(clearTextPassword, BCrypt.gensalt()));
     }
 
     boolean verifyUser(String username, String providedClearTextPassword) {
         // read the previously hashed password from the database
         var hashedPassword = readHashedPasswordFromDatabase(username);
 
-        return BCrypt.checkpw(providedClearTextPassword, hashedPassword);
+        return hashing(() -> BCrypt.checkpw(providedClearTextPassword, hashedPassword));
+    }
+
+    private <T> T hashing(Supplier<T> work) {
+        passwordHashing.acquireUninterruptibly();
+        try {
+            return work.get();
+        } finally {
+            passwordHashing.release();
+        }
     }
 
     private String readHashedPasswordFromDatabase(String username) {
@@ -83,6 +109,16 @@ public class UserService {
         }
         dataAccess.deleteAuth(authToken);
         // remove from GameData?
+        for (var listener : logoutListeners) {
+            listener.accept(authToken);
+        }
+    }
+
+    /**
+     * Registers a listener called with each auth token once it has been logged out
+     */
+    public void addLogoutListener(Consumer<String> listener) {
+        logoutListeners.add(listener);
     }
 
     public int createGame(String authToken, String gameName) throws Exception {
@@ -97,17 +133,41 @@ public class UserService {
         return dataAccess.createGame(gameName);
     }
 
+    /**
+     * Lists every game, without their boards, following the pages to the end
+     */
     public GameData[] listGames(String authToken) throws Exception {
+        List<GameData> games = new ArrayList<>();
+        Integer cursor = null;
+        do {
+            var page = listGames(authToken, GameFilter.ALL, cursor, MAX_PAGE_SIZE);
+            games.addAll(Arrays.asList(page.games()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return games.toArray(new GameData[0]);
+    }
+
+    /**
+     * Lists one page of games, without their boards
+     *
+     * @param cursor the previous page's nextCursor, or null for the first page
+     * @param limit  page size, or null for the default
+     */
+    public ListGamesResponse listGames(String authToken, GameFilter filter, Integer cursor, Integer limit) throws Exception {
         AuthData auth= dataAccess.getAuth(authToken);
         if (auth == null){
             throw new Exception("Unauthorized");
         }
-        var existingAuth= dataAccess.getAuth(authToken);
-        if (existingAuth == null){
-            throw new Exception("Unauthorized");
+        if (limit == null){
+            limit = DEFAULT_PAGE_SIZE;
+        } else if (limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new Exception("bad request - page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (cursor != null && cursor < 0){
+            throw new Exception("bad request - bad cursor");
         }
 
-        return dataAccess.listGames(authToken);
+        return dataAccess.listGames((filter == null)? GameFilter.ALL : filter, (cursor == null)? 0 : cursor, limit);
     }
 
     public GameData joinGame(String authToken, GameSpec gameSpec) throws Exception {
@@ -153,7 +213,11 @@ public class UserService {
         if (auth== null) {
             throw new Exception("Unauthorized");
         }
-        var game= dataAccess.getGame(req.gameID());
+        return findGame(req.gameID());
+    }
+
+    private GameData findGame(int gameID) throws Exception {
+        var game= dataAccess.getGame(gameID);
         if (game == null){
             throw new Exception("game not found");
         }
@@ -161,9 +225,16 @@ public class UserService {
     }
 
     public void leaveGame(LeaveResignRequest req) throws Exception{
-        GameData game = validateLeaveOrResign(req);
+        leaveGame(validate(req.authToken()), req.gameID());
+    }
+
+    /**
+     * Leaves a game as a user the caller has already authenticated
+     */
+    public void leaveGame(AuthData auth, int gameID) throws Exception{
+        GameData game = findGame(gameID);
 
-        String username = dataAccess.getAuth(req.authToken()).username();
+        String username = auth.username();
         boolean isWhite = username.equals(game.whiteUsername());
         boolean isBlack = username.equals(game.blackUsername());
 
@@ -174,17 +245,24 @@ public class UserService {
         } else {
             System.out.print(username + " (OBSERVER) left the game.");
         }
-        dataAccess.leaveGame(username, req.gameID());
+        dataAccess.leaveGame(username, gameID);
     }
 
 
     public void resignGame(LeaveResignRequest req) throws Exception{
-        GameData game = validateLeaveOrResign(req);
+        resignGame(validate(req.authToken()), req.gameID());
+    }
+
+    /**
+     * Resigns a game as a user the caller has already authenticated
+     */
+    public void resignGame(AuthData auth, int gameID) throws Exception{
+        GameData game = findGame(gameID);
         if (game.gameOver()){
             throw new Exception("Game already finished");
         }
 
-        String username = dataAccess.getAuth(req.authToken()).username();
+        String username = auth.username();
         boolean isWhite = username.equals(game.whiteUsername());
         boolean isBlack = username.equals(game.blackUsername());
 
@@ -197,18 +275,28 @@ public class UserService {
             System.out.print(username + " (BLACK) resigned the game.");
         }
 
-        dataAccess.resignGame(username, req.gameID());
+        dataAccess.resignGame(username, gameID);
     }
 
     public GameData getGame(String authToken, int gameID) throws Exception {
-        AuthData auth= dataAccess.getAuth(authToken);
-        if (auth == null){
-            throw new Exception("unauthorized");
-        }
-        var game= dataAccess.getGame(gameID);
+        validate(authToken);
+        return withBoard(findGame(gameID));
+    }
+
+    /**
+     * Gets the game that moves are made on, for a caller that has already
+     * authenticated. Only the game's WebSocket executor may use it; everyone else
+     * gets a copy from {@link #getGame}.
+     */
+    public GameData loadGame(int gameID) throws Exception {
+        var game = dataAccess.getLiveGame(gameID);
         if (game == null){
             throw new Exception("game not found");
         }
+        return withBoard(game);
+    }
+
+    private GameData withBoard(GameData game) {
         if (game.game()== null){
             var newGame = new ChessGame();
             game = new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), newGame, game.gameOver());
@@ -216,6 +304,20 @@ public class UserService {
         }
         return game;
     }
+    /**
+     * Forgets what is known about a game, for when another server may have changed it
+     */
+    public void evictGame(int gameID) {
+        dataAccess.evictGame(gameID);
+    }
+
+    /**
+     * Forgets an auth token another server has logged out
+     */
+    public void evictAuth(String authToken) {
+        dataAccess.evictAuth(authToken);
+    }
+
     public AuthData validate(String authToken) throws Exception {
         AuthData auth= dataAccess.getAuth(authToken);
         if (auth == null){
@@ -225,7 +327,14 @@ public class UserService {
         }
     }
     public ChessGame applyMove(String authToken, int gameID, ChessMove move) throws Exception {
-        var game = dataAccess.getGame(gameID);
+        return applyMove(validate(authToken), gameID, move);
+    }
+
+    /**
+     * Makes a move as a user the caller has already authenticated
+     */
+    public ChessGame applyMove(AuthData auth, int gameID, ChessMove move) throws Exception {
+        var game = dataAccess.getLiveGame(gameID);
         if (game == null || move == null){
             throw new Exception("game not found");
         }
@@ -233,10 +342,6 @@ public class UserService {
             throw new Exception("Game already finished");
         }
 
-        AuthData auth= dataAccess.getAuth(authToken);
-        if (auth == null){
-            throw new Exception("unauthorized");
-        }
         var turn = game.game().getTeamTurn();
 
         if (turn == ChessGame.TeamColor.WHITE && !Objects.equals(game.whiteUsername(), auth.username()) ||
@@ -251,12 +356,15 @@ public class UserService {
             throw new Exception("invalid move. Make sure you're moving YOUR pieces");
         }
 
-        dataAccess.updateGame(game);
+        int ply = game.game().getPly();
+        dataAccess.appendMove(game.gameID(), ply, move);
 
-        if (game.game().isInCheckmate(ChessGame.TeamColor.WHITE) || game.game().isInCheckmate(ChessGame.TeamColor.BLACK)
-                || game.game().isInStalemate(ChessGame.TeamColor.WHITE) || game.game().isInStalemate(ChessGame.TeamColor.BLACK)){
+        var status = game.game().getStatus(game.game().getTeamTurn());
+        if (status == ChessGame.GameStatus.CHECKMATE || status == ChessGame.GameStatus.STALEMATE){
             var newGame = new GameData(game.gameID(),game.whiteUsername(),game.blackUsername(), game.gameName(), game.game(), true);
             dataAccess.updateGame(newGame);
+        } else if (ply % SNAPSHOT_INTERVAL == 0){
+            dataAccess.updateGame(game);
         }
 
         return game.game();
@@ -0,0 +1,12 @@
+package websocket;
+
+/**
+ * Protocol extensions a client asked for in the query string of its WebSocket URL
+ *
+ * @param batching {@code batch=true}: several messages may arrive as one BATCH frame
+ * @param deltas   {@code delta=true}: moves arrive as MOVE messages instead of LOAD_GAME
+ * @param binary   {@code protocol=binary}: messages are sent as {@link BinaryCodec} frames
+ */
+public record ClientOptions(boolean batching, boolean deltas, boolean binary) {
+    public static final ClientOptions DEFAULT = new ClientOptions(false, false, false);
+}
@@ -0,0 +1,257 @@
+package websocket;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads JSON commands in a single streaming pass, building the right command type
+ * directly instead of binding through Gson's reflection twice.
+ * <p>
+ * Fields may come in any order (Gson writes a {@link MakeMoveCommand}'s move before
+ * the inherited commandType), so the move is decoded as it is met and the command is
+ * built once the object ends. Anything that is valid JSON but not a valid command
+ * comes back as a {@link Result} with the reason; only broken JSON syntax, which the
+ * reader can only report by throwing, is caught, once, at the top.
+ * <p>
+ * The adapters hold no state, so one set serves every connection. They are also
+ * registered in {@link #GSON}, which the server writes its messages with, so moves
+ * and squares go out in the same form they are read in.
+ */
+public final class CommandParser {
+    private static final Map<String, UserGameCommand.CommandType> COMMAND_TYPES = byName(UserGameCommand.CommandType.values());
+    private static final Map<String, ChessPiece.PieceType> PIECE_TYPES = byName(ChessPiece.PieceType.values());
+
+    /**
+     * Reads {@code {"row":r,"col":c}}, giving null unless both are on the board
+     */
+    static final TypeAdapter<ChessPosition> POSITION = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, ChessPosition position) throws IOException {
+            if (position == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("row").value(position.getRow());
+            out.name("col").value(position.getColumn());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPosition read(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            int row = 0;
+            int col = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "row" -> row = readSquareIndex(in);
+                    case "col" -> col = readSquareIndex(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return (row == 0 || col == 0)? null : new ChessPosition(row, col);
+        }
+    };
+
+    /**
+     * Reads a move as Gson writes it, giving null if either square or the promotion
+     * piece is not valid
+     */
+    static final TypeAdapter<ChessMove> MOVE = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, ChessMove move) throws IOException {
+            if (move == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("startPosition");
+            POSITION.write(out, move.getStartPosition());
+            out.name("endPosition");
+            POSITION.write(out, move.getEndPosition());
+            if (move.getPromotionPiece() != null) {
+                out.name("promotionPiece").value(move.getPromotionPiece().name());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ChessMove read(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            ChessPosition start = null;
+            ChessPosition end = null;
+            ChessPiece.PieceType promotion = null;
+            boolean valid = true;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "startPosition" -> start = POSITION.read(in);
+                    case "endPosition" -> end = POSITION.read(in);
+                    case "promotionPiece" -> {
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        } else {
+                            promotion = (in.peek() == JsonToken.STRING)? PIECE_TYPES.get(in.nextString()) : null;
+                            valid &= promotion != null;
+                        }
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return (valid && start != null && end != null)? new ChessMove(start, end, promotion) : null;
+        }
+    };
+
+    /**
+     * Either the command or why the message isn't one
+     */
+    public record Result(UserGameCommand command, String error) {
+        static Result ok(UserGameCommand command) {
+            return new Result(command, null);
+        }
+
+        static Result failed(String error) {
+            return new Result(null, error);
+        }
+    }
+
+    /**
+     * Gson with the move and position adapters registered
+     */
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(ChessPosition.class, POSITION)
+            .registerTypeAdapter(ChessMove.class, MOVE)
+            .create();
+
+    private CommandParser() {
+    }
+
+    /**
+     * @return the command, a {@link MakeMoveCommand} for MAKE_MOVE, or the reason the
+     * message could not be read
+     */
+    public static Result parse(String json) {
+        if (json == null) {
+            return Result.failed("empty message");
+        }
+        try {
+            return read(new JsonReader(new StringReader(json)));
+        } catch (IOException | IllegalStateException ex) {
+            return Result.failed("malformed JSON");
+        }
+    }
+
+    private static Result read(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            return Result.failed("command is not a JSON object");
+        }
+        UserGameCommand.CommandType type = null;
+        String authToken = null;
+        Integer gameID = null;
+        ChessMove move = null;
+        boolean hasMove = false;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "commandType" -> {
+                    type = (in.peek() == JsonToken.STRING)? COMMAND_TYPES.get(in.nextString()) : null;
+                    if (type == null) {
+                        return Result.failed("unknown commandType");
+                    }
+                }
+                case "authToken" -> {
+                    if (in.peek() == JsonToken.STRING) {
+                        authToken = in.nextString();
+                    } else if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        return Result.failed("authToken is not a string");
+                    }
+                }
+                case "gameID" -> {
+                    gameID = readInt(in);
+                    if (gameID == null) {
+                        return Result.failed("gameID is not a whole number");
+                    }
+                }
+                case "move" -> {
+                    move = MOVE.read(in);
+                    hasMove = true;
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (in.peek() != JsonToken.END_DOCUMENT) {
+            return Result.failed("unexpected content after command");
+        }
+
+        if (type == null) {
+            return Result.failed("missing commandType");
+        }
+        if (gameID == null) {
+            return Result.failed("missing gameID");
+        }
+        if (type != UserGameCommand.CommandType.MAKE_MOVE) {
+            return Result.ok(new UserGameCommand(type, authToken, gameID));
+        }
+        if (move == null) {
+            return Result.failed(hasMove? "invalid move" : "missing move");
+        }
+        return Result.ok(new MakeMoveCommand(authToken, gameID, move));
+    }
+
+    // null unless the next value is a whole number that fits an int; like Gson's int
+    // adapter, a number written as a string ("gameID":"3") counts too
+    private static Integer readInt(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            in.skipValue();
+            return null;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException ex) {
+            in.skipValue();
+            return null;
+        }
+    }
+
+    // 1 to 8, or 0 if the value is not on the board
+    private static int readSquareIndex(JsonReader in) throws IOException {
+        Integer value = readInt(in);
+        return (value == null || value < 1 || value > 8)? 0 : value;
+    }
+
+    private static <T extends Enum<T>> Map<String, T> byName(T[] values) {
+        Map<String, T> byName = new HashMap<>();
+        for (T value : values) {
+            byName.put(value.name(), value);
+        }
+        return byName;
+    }
+}
@@ -1,52 +1,647 @@
 package websocket;
 
+import chess.ChessGame;
+import chess.ChessGameCodec;
+import com.google.gson.Gson;
+import dataaccess.GameEventBus;
+import dataaccess.LocalGameEventBus;
+import datamodel.AuthData;
+import exception.DataAccessException;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.ServerMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Iterator;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks which sessions are in which game and sends them messages.
+ * <p>
+ * Sends never block the caller. Each session has its own outbox that writes one
+ * frame at a time with Jetty's async send, so a slow client only delays itself.
+ * A queued board state is dropped when a newer one is queued behind it, since the
+ * client only needs the latest. A client whose outbox still grows past
+ * {@link #MAX_QUEUED_FRAMES}, or whose current write has been stuck for
+ * {@link #MAX_WRITE_TIME}, is disconnected.
+ * <p>
+ * A broadcast message is serialized once per form that some recipient needs (JSON
+ * or {@link BinaryCodec} binary, full or delta) and that frame is queued for every
+ * session wanting that form. Clients that connected with batching on get the
+ * messages of one {@link #broadcast(int, List)} combined into a single BATCH frame,
+ * built once per distinct set of recipients' messages and form.
+ * <p>
+ * A session that has connected to a game is bound to the user and game it
+ * connected as, so later commands on it need not look the auth token up again.
+ * The binding goes away when the session leaves the game or closes, or when its
+ * token is {@linkplain #revoke revoked}.
+ * <p>
+ * Broadcasts are also published on the {@link GameEventBus}, so sessions in the
+ * same game on other server nodes get them too. There nobody is excluded, since the
+ * excluded session is on the node that broadcast.
+ * <p>
+ * Players get broadcasts at once. Sessions that connected as observers get them
+ * from a separate tier instead, at most once every {@link #OBSERVER_INTERVAL}: what
+ * arrived in between is collapsed to the notifications and the newest board, then
+ * encoded once for all of the game's observers. However big the audience, a move
+ * only costs the players' sends before the game's next command can run. Boards are
+ * copied when they are queued for observers, since the game they were sent from
+ * keeps changing. Timing is kept by one scheduler thread, but each game's flush
+ * runs on a virtual thread of its own, one at a time per game.
+ */
+public class ConnectionManager implements AutoCloseable {
+    static final int MAX_QUEUED_FRAMES = 64;
+    static final Duration MAX_WRITE_TIME = Duration.ofSeconds(10);
+    static final Duration OBSERVER_INTERVAL = Duration.ofMillis(250);
+    // each message of a broadcast is a bit of an int, alongside two bits of form
+    private static final int MAX_BROADCAST = Integer.SIZE - 3;
 
-public class ConnectionManager {
     public final ConcurrentHashMap<Integer, ConcurrentHashMap<Session, String>> games = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Session, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Session, Binding> bindings = new ConcurrentHashMap<>();
+    // the sessions bound with each auth token, so a logout finds them without a scan
+    private final ConcurrentHashMap<String, Set<Session>> tokenSessions = new ConcurrentHashMap<>();
+    private final Gson gson = CommandParser.GSON;
+    private final GameEventBus events;
+    private final Duration observerInterval;
+    private final ConcurrentHashMap<Integer, ObserverTier> observerTiers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService observerTimer =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("observer-timer").factory());
+
+    /**
+     * One message of a broadcast
+     *
+     * @param exclude session that should not get this message, or null
+     * @param delta   what clients taking deltas get instead, or null to send them message too
+     */
+    public record Outgoing(ServerMessage message, Session exclude, ServerMessage delta) {
+        public Outgoing(ServerMessage message, Session exclude) {
+            this(message, exclude, null);
+        }
+    }
+
+    public ConnectionManager() {
+        this(new LocalGameEventBus());
+    }
+
+    public ConnectionManager(GameEventBus events) {
+        this(events, OBSERVER_INTERVAL);
+    }
+
+    public ConnectionManager(GameEventBus events, Duration observerInterval) {
+        this.events = events;
+        this.observerInterval = observerInterval;
+        events.subscribe(this::received);
+    }
+
+    /**
+     * Who a session connected to a game as
+     *
+     * @param color "white", "black" or "observer", as of when the session connected
+     */
+    public record Binding(AuthData auth, int gameID, String color) {
+    }
+
+    /**
+     * Sets up a newly connected session
+     */
+    public void open(Session session, ClientOptions options) {
+        outboxes.put(session, new Outbox(session, options));
+    }
 
     public void add(int gameID, Session session, String authToken) {
-        games.computeIfAbsent(gameID, id-> new ConcurrentHashMap<>()).put(session,authToken);
+        games.compute(gameID, (id, gameMap) -> {
+            if (gameMap == null) {
+                gameMap = new ConcurrentHashMap<>();
+            }
+            gameMap.put(session, authToken);
+            return gameMap;
+        });
+    }
+
+    /**
+     * Adds a session to a game and binds it to the user it connected as, replacing
+     * any game it was in before
+     */
+    public void bind(Session session, Binding binding) {
+        Binding previous = bindings.put(session, binding);
+        if (previous != null) {
+            unbind(session, previous);
+        }
+        tokenSessions.compute(binding.auth().authToken(), (token, sessions) -> {
+            if (sessions == null) {
+                sessions = ConcurrentHashMap.newKeySet();
+            }
+            sessions.add(session);
+            return sessions;
+        });
+        add(binding.gameID(), session, binding.auth().authToken());
+    }
+
+    /**
+     * @return who the session connected as, or null if it isn't connected to a game
+     */
+    public Binding binding(Session session) {
+        return bindings.get(session);
+    }
+
+    /**
+     * Unbinds every session that connected with the token and takes it out of its game
+     *
+     * @return the sessions that were bound with it
+     */
+    public List<Session> revoke(String authToken) {
+        Set<Session> sessions = tokenSessions.remove(authToken);
+        if (sessions == null) {
+            return List.of();
+        }
+        List<Session> revoked = new ArrayList<>();
+        for (Session session : sessions) {
+            Binding binding = bindings.get(session);
+            if (binding != null && binding.auth().authToken().equals(authToken)
+                    && bindings.remove(session, binding)) {
+                leave(binding.gameID(), session);
+                revoked.add(session);
+            }
+        }
+        return revoked;
+    }
+
+    private void unbind(Session session, Binding binding) {
+        tokenSessions.computeIfPresent(binding.auth().authToken(), (token, sessions) -> {
+            sessions.remove(session);
+            return sessions.isEmpty()? null : sessions;
+        });
+        leave(binding.gameID(), session);
     }
 
     public void remove(int gameID, Session session) {
-        var gameMap = games.get(gameID);
-        if (gameMap == null){return;}
+        Binding binding = bindings.get(session);
+        if (binding != null && binding.gameID() == gameID && bindings.remove(session, binding)) {
+            unbind(session, binding);
+        }
+        leave(gameID, session);
+    }
+
+    // the game's observer tier goes with its last session, inside the same compute that
+    // add uses, so a session joining at the same time can't be left with a dropped tier
+    private void leave(int gameID, Session session) {
+        games.computeIfPresent(gameID, (id, gameMap) -> {
+            gameMap.remove(session);
+            if (!gameMap.isEmpty()) {
+                return gameMap;
+            }
+            observerTiers.remove(id);
+            return null;
+        });
+    }
+
+    /**
+     * Forgets a session that has closed, dropping anything still queued for it
+     */
+    public void closed(Session session) {
+        Binding binding = bindings.remove(session);
+        if (binding != null) {
+            unbind(session, binding);
+        } else {
+            // only sessions added without a binding need looking for
+            for (int gameID : games.keySet()) {
+                leave(gameID, session);
+            }
+        }
+        outboxes.remove(session);
+    }
+
+    public void send(Session session, ServerMessage message) {
+        Outbox outbox = outbox(session);
+        outbox.offer(encode(message, outbox.options.binary()));
+    }
+
+    public void broadcast(int gameID, Session exclude, ServerMessage message) {
+        broadcast(gameID, List.of(new Outgoing(message, exclude)));
+    }
 
-        gameMap.remove(session);
+    /**
+     * Sends several messages to a game in order, as one frame to clients that batch
+     */
+    public void broadcast(int gameID, List<Outgoing> messages) {
+        deliver(gameID, messages);
+        try {
+            events.publish(gameID, encodeEvent(messages));
+        } catch (DataAccessException ex) {
+            System.out.println("[WS ERROR] game " + gameID + ": " + ex.getMessage());
+        }
+    }
+
+    private void received(int gameID, byte[] event) {
+        try {
+            deliver(gameID, decodeEvent(event));
+        } catch (IllegalArgumentException ex) {
+            System.out.println("[WS ERROR] game " + gameID + ": bad event: " + ex.getMessage());
+        }
+    }
+
+    // a broadcast as sent to other nodes: the message count, then each message's
+    // and its delta's BinaryCodec frames, each after its length (0 for no delta)
+    static byte[] encodeEvent(List<Outgoing> messages) {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(messages.size());
+            for (Outgoing message : messages) {
+                byte[] frame = BinaryCodec.encodeMessage(message.message());
+                byte[] delta = (message.delta() == null)? new byte[0] : BinaryCodec.encodeMessage(message.delta());
+                out.writeInt(frame.length);
+                out.write(frame);
+                out.writeInt(delta.length);
+                out.write(delta);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Outgoing> decodeEvent(byte[] event) {
+        ByteBuffer in = ByteBuffer.wrap(event);
+        List<Outgoing> messages = new ArrayList<>();
+        try {
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                ServerMessage message = decodeFrame(in);
+                if (message == null) {
+                    throw new IllegalArgumentException("event message " + i + " is empty");
+                }
+                messages.add(new Outgoing(message, null, decodeFrame(in)));
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("truncated event");
+        }
+        return messages;
+    }
 
-        if (gameMap.isEmpty()){
-            games.remove(gameID);
+    private static ServerMessage decodeFrame(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("truncated event");
         }
+        if (length == 0) {
+            return null;
+        }
+        ByteBuffer frame = in.slice(in.position(), length);
+        in.position(in.position() + length);
+        return BinaryCodec.decodeMessages(frame).getFirst();
     }
 
-    public void broadcast(int gameID, Session exclude, String json) {
+    // sends to this node's players now and hands the rest to its observer tier
+    private void deliver(int gameID, List<Outgoing> messages) {
         var gameMap = games.get(gameID);
-        if(gameMap == null){
+        if(gameMap == null || messages.isEmpty()){
             return;
         }
-        Iterator<Session> it = gameMap.keySet().iterator();
+        if (messages.size() > MAX_BROADCAST) {
+            throw new IllegalArgumentException("too many messages in one broadcast");
+        }
+        List<Session> players = new ArrayList<>();
+        boolean observers = false;
+        for (Session s : gameMap.keySet()) {
+            if (isObserver(s)) {
+                observers = true;
+            } else {
+                players.add(s);
+            }
+        }
+        sendAll(players, messages);
+        ObserverTier tier = observers? tier(gameID) : null;
+        if (tier != null) {
+            tier.add(messages);
+        }
+    }
+
+    // made under the game's entry in games, which leave removes it under; null once
+    // the game has no sessions left
+    private ObserverTier tier(int gameID) {
+        ObserverTier[] tier = {null};
+        games.computeIfPresent(gameID, (id, gameMap) -> {
+            tier[0] = observerTiers.computeIfAbsent(id, ObserverTier::new);
+            return gameMap;
+        });
+        return tier[0];
+    }
+
+    private boolean isObserver(Session session) {
+        Binding binding = bindings.get(session);
+        return binding != null && "observer".equals(binding.color());
+    }
 
-        while (it.hasNext()){
-            Session s = it.next() ;
-            if (s.equals(exclude)) {
+    private void sendAll(List<Session> sessions, List<Outgoing> messages) {
+        // each message's frame in each form, built the first time a session needs it
+        Frame[][] frames = new Frame[4][messages.size()];
+        // keyed by which of the messages a session gets, and in which form
+        Map<Integer, Frame> batches = new HashMap<>();
+
+        for (Session s : sessions) {
+            if (!s.isOpen()) {
+                closed(s);
                 continue;
             }
+            Outbox outbox = outbox(s);
+            ClientOptions options = outbox.options;
+            int form = (options.binary()? 2 : 0) | (options.deltas()? 1 : 0);
+            int included = included(messages, s);
+            for (int i = 0; i < messages.size(); i++) {
+                if ((included & 1 << i) != 0 && frames[form][i] == null) {
+                    var message = messages.get(i);
+                    boolean delta = options.deltas() && message.delta() != null;
+                    frames[form][i] = encode(delta? message.delta() : message.message(), options.binary());
+                }
+            }
+            if (options.batching() && Integer.bitCount(included) > 1) {
+                outbox.offer(batches.computeIfAbsent(included << 2 | form,
+                        key -> batch(frames[form], included, options.binary())));
+            } else {
+                for (int i = 0; i < messages.size(); i++) {
+                    if ((included & 1 << i) != 0) {
+                        outbox.offer(frames[form][i]);
+                    }
+                }
+            }
+        }
+    }
+
+    // keeps every notification but only the newest board, sent in full if it
+    // replaced others, since a delta only applies on top of the board before it
+    static List<Outgoing> collapse(List<Outgoing> pending) {
+        int last = -1;
+        int boards = 0;
+        for (int i = 0; i < pending.size(); i++) {
+            if (isBoard(pending.get(i))) {
+                last = i;
+                boards++;
+            }
+        }
+        if (boards <= 1) {
+            return pending;
+        }
+        List<Outgoing> collapsed = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            Outgoing message = pending.get(i);
+            if (!isBoard(message)) {
+                collapsed.add(message);
+            } else if (i == last) {
+                collapsed.add(new Outgoing(message.message(), message.exclude()));
+            }
+        }
+        return collapsed;
+    }
+
+    // the message with its board copied as it is now, so later moves on the game don't show
+    static Outgoing snapshot(Outgoing message) {
+        if (!(message.message() instanceof LoadGameMessage board) || board.getGame() == null) {
+            return message;
+        }
+        ChessGame copy = ChessGameCodec.decode(ChessGameCodec.encode(board.getGame()));
+        return new Outgoing(new LoadGameMessage(copy), message.exclude(), message.delta());
+    }
+
+    private static boolean isBoard(Outgoing message) {
+        return message.message().getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME;
+    }
+
+    // bit i is set if the session gets message i
+    private static int included(List<Outgoing> messages, Session session) {
+        int included = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            if (!session.equals(messages.get(i).exclude())) {
+                included |= 1 << i;
+            }
+        }
+        return included;
+    }
+
+    private Frame encode(ServerMessage message, boolean binary) {
+        boolean gameState = message.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME;
+        return binary? new Frame(null, BinaryCodec.encodeMessage(message), gameState)
+                : new Frame(gson.toJson(message), null, gameState);
+    }
+
+    // notifications ride along, so a newer board doesn't make a batch stale
+    private static Frame batch(Frame[] frames, int included, boolean binary) {
+        if (binary) {
+            List<byte[]> parts = new ArrayList<>();
+            for (int i = 0; i < frames.length; i++) {
+                if ((included & 1 << i) != 0) {
+                    parts.add(frames[i].binary());
+                }
+            }
+            return new Frame(null, BinaryCodec.encodeBatch(parts), false);
+        }
+        var json = new StringBuilder("{\"serverMessageType\":\"BATCH\",\"messages\":[");
+        String separator = "";
+        for (int i = 0; i < frames.length; i++) {
+            if ((included & 1 << i) != 0) {
+                json.append(separator).append(frames[i].text());
+                separator = ",";
+            }
+        }
+        return new Frame(json.append("]}").toString(), null, false);
+    }
+
+    private Outbox outbox(Session session) {
+        return outboxes.computeIfAbsent(session, s -> new Outbox(s, ClientOptions.DEFAULT));
+    }
+
+    private void disconnect(Session session) {
+        closed(session);
+        try {
+            session.close(StatusCode.TRY_AGAIN_LATER, "client too slow");
+        } catch (RuntimeException ignore) {
+        }
+    }
+
+    @Override
+    public void close() {
+        observerTimer.shutdownNow();
+    }
+
+    /**
+     * A game's broadcasts waiting to go to its observers
+     */
+    private final class ObserverTier {
+        private final int gameID;
+        private final ReentrantLock lock = new ReentrantLock();
+        private List<Outgoing> pending = new ArrayList<>();
+        private boolean scheduled;
+        private long lastFlush = System.nanoTime();
+
+        ObserverTier(int gameID) {
+            this.gameID = gameID;
+        }
+
+        // called on the thread that broadcast, while the game can't change
+        void add(List<Outgoing> messages) {
+            List<Outgoing> copies = new ArrayList<>(messages.size());
+            for (Outgoing message : messages) {
+                copies.add(snapshot(message));
+            }
+            lock.lock();
+            try {
+                pending.addAll(copies);
+                if (!scheduled) {
+                    scheduled = true;
+                    schedule();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // the next flush stays scheduled until this one has sent, so a game's flushes never overlap
+        private void schedule() {
+            long delay = Math.max(0, lastFlush + observerInterval.toNanos() - System.nanoTime());
+            observerTimer.schedule(() -> Thread.ofVirtual().name("observer-flush-" + gameID).start(this::flush),
+                    delay, TimeUnit.NANOSECONDS);
+        }
+
+        private void flush() {
+            List<Outgoing> messages;
+            lock.lock();
+            try {
+                messages = collapse(pending);
+                pending = new ArrayList<>();
+                lastFlush = System.nanoTime();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                send(messages);
+            } finally {
+                lock.lock();
+                try {
+                    if (pending.isEmpty()) {
+                        scheduled = false;
+                    } else {
+                        schedule();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        private void send(List<Outgoing> messages) {
+            var gameMap = games.get(gameID);
+            if (gameMap == null) {
+                return;
+            }
+            List<Session> observers = new ArrayList<>();
+            for (Session s : gameMap.keySet()) {
+                if (isObserver(s)) {
+                    observers.add(s);
+                }
+            }
+            try {
+                for (int from = 0; from < messages.size(); from += MAX_BROADCAST) {
+                    sendAll(observers, messages.subList(from, Math.min(messages.size(), from + MAX_BROADCAST)));
+                }
+            } catch (RuntimeException ex) {
+                System.out.println("[WS ERROR] game " + gameID + " observers: " + ex.getMessage());
+            }
+        }
+    }
+
+    // holds either text or binary; the bytes are shared by every session the frame goes to
+    private record Frame(String text, byte[] binary, boolean gameState) {
+    }
+
+    private final class Outbox implements WriteCallback {
+        private final Session session;
+        private final ClientOptions options;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private boolean writing;
+        private long writeStarted;
+
+        Outbox(Session session, ClientOptions options) {
+            this.session = session;
+            this.options = options;
+        }
+
+        void offer(Frame frame) {
+            Frame next = null;
+            boolean slow;
+            lock.lock();
             try {
-                if (s.isOpen()) {
-                    s.getRemote().sendString(json);
+                if (frame.gameState()) {
+                    queue.removeIf(Frame::gameState);
+                }
+                queue.add(frame);
+                slow = queue.size() > MAX_QUEUED_FRAMES
+                        || (writing && System.nanoTime() - writeStarted > MAX_WRITE_TIME.toNanos());
+                if (!slow && !writing) {
+                    next = queue.poll();
+                    writing = true;
+                    writeStarted = System.nanoTime();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (slow) {
+                disconnect(session);
+            } else if (next != null) {
+                write(next);
+            }
+        }
+
+        private void write(Frame frame) {
+            try {
+                if (frame.text() != null) {
+                    session.getRemote().sendString(frame.text(), this);
                 } else {
-                    it.remove();
+                    session.getRemote().sendBytes(ByteBuffer.wrap(frame.binary()), this);
                 }
-            } catch (IOException e) {
-                it.remove();
+            } catch (RuntimeException ex) {
+                writeFailed(ex);
             }
         }
-        if (gameMap.isEmpty()){
-            games.remove(gameID);
+
+        // Jetty may call this from inside the send when the write completes at
+        // once; the recursion is bounded by the queue limit
+        @Override
+        public void writeSuccess() {
+            Frame next;
+            lock.lock();
+            try {
+                next = queue.poll();
+                writing = next != null;
+                writeStarted = System.nanoTime();
+            } finally {
+                lock.unlock();
+            }
+            if (next != null) {
+                write(next);
+            }
+        }
+
+        @Override
+        public void writeFailed(Throwable x) {
+            disconnect(session);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package websocket;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs tasks one game at a time: tasks for the same game run in the order they
+ * were submitted and never overlap, while different games run in parallel.
+ * <p>
+ * Each game with work pending has a mailbox. The first task for an idle game starts
+ * a drain on the executor, which runs the mailbox's tasks until it is empty and then
+ * removes it. All mailbox bookkeeping happens inside the map's per-key compute, so a
+ * game never has two drains running at once.
+ */
+public class GameExecutor implements AutoCloseable {
+    private final ConcurrentHashMap<Integer, Queue<Runnable>> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public GameExecutor() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public GameExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void submit(int gameID, Runnable task) {
+        boolean[] idle = {false};
+        mailboxes.compute(gameID, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            mailbox.add(task);
+            return mailbox;
+        });
+        if (idle[0]) {
+            executor.execute(() -> drain(gameID));
+        }
+    }
+
+    private void drain(int gameID) {
+        Runnable task;
+        while ((task = next(gameID)) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                System.out.println("[WS ERROR] game " + gameID + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    // takes the next task, removing the mailbox once it is empty
+    private Runnable next(int gameID) {
+        Runnable[] next = {null};
+        mailboxes.computeIfPresent(gameID, (id, mailbox) -> {
+            next[0] = mailbox.poll();
+            return (next[0] == null)? null : mailbox;
+        });
+        return next[0];
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
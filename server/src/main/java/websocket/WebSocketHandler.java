@@ -1,9 +1,11 @@
 package websocket;
 
 import chess.ChessGame;
-import com.google.gson.Gson;
+import chess.ChessPiece;
+import dataaccess.GameEventBus;
+import datamodel.AuthData;
 import datamodel.GameData;
-import datamodel.LeaveResignRequest;
+import exception.DataAccessException;
 import io.javalin.websocket.*;
 import org.eclipse.jetty.websocket.api.Session;
 import org.jetbrains.annotations.NotNull;
@@ -11,72 +13,217 @@ import service.UserService;
 import websocket.commands.*;
 import websocket.messages.*;
 
-public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsCloseHandler {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
-    private final ConnectionManager connections = new ConnectionManager();
-    private final Gson gson = new Gson();
+public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsBinaryMessageHandler, WsCloseHandler {
+
+    private final ConnectionManager connections;
+    // each game's commands run one at a time, in the order they arrived
+    private final GameExecutor games = new GameExecutor();
     private final UserService service;
+    private final GameEventBus events;
 
 
-    public WebSocketHandler(UserService service){
+    public WebSocketHandler(UserService service, GameEventBus events){
         this.service = service;
+        this.events = events;
+        this.connections = new ConnectionManager(events);
+        service.addLogoutListener(this::loggedOut);
+        events.subscribe(new GameEventBus.Listener() {
+            @Override
+            public void onEvent(int gameID, byte[] event) {
+                // another node changed the game
+                service.evictGame(gameID);
+            }
+
+            @Override
+            public void onLogout(String authToken) {
+                service.evictAuth(authToken);
+                revoke(authToken);
+            }
+        });
     }
 
     @Override
     public void handleConnect(WsConnectContext ctx) {
         System.out.println("Websocket connected");
         ctx.enableAutomaticPings();
+        connections.open(ctx.session, new ClientOptions(
+                "true".equalsIgnoreCase(ctx.queryParam("batch")),
+                "true".equalsIgnoreCase(ctx.queryParam("delta")),
+                "binary".equalsIgnoreCase(ctx.queryParam("protocol"))));
     }
 
     @Override
     public void handleMessage(@NotNull WsMessageContext ctx) {
+        var parsed = CommandParser.parse(ctx.message());
+        if (parsed.command() == null) {
+            sendCommandError(ctx.session, parsed.error());
+            return;
+        }
+        submit(parsed.command(), ctx.session);
+    }
+
+    @Override
+    public void handleBinaryMessage(@NotNull WsBinaryMessageContext ctx) {
+        Session session = ctx.session;
         try {
-            UserGameCommand cmd = gson.fromJson(ctx.message(), UserGameCommand.class);
-            Session session = ctx.session;
+            submit(BinaryCodec.decodeCommand(ctx.data(), ctx.offset(), ctx.length()), session);
+        } catch (Exception ex) {
+            sendCommandError(session, ex.getMessage());
+        }
+    }
 
+    private void submit(UserGameCommand cmd, Session session) {
+        games.submit(cmd.getGameID(), () -> dispatch(cmd, session));
+    }
+
+    private void dispatch(UserGameCommand cmd, Session session) {
+        // reads need no lease, since events from other nodes evict the game as it changes
+        boolean changes = switch (cmd.getCommandType()) {
+            case MAKE_MOVE, LEAVE, RESIGN -> true;
+            case CONNECT, RESYNC -> false;
+        };
+        if (!changes) {
+            run(cmd, session);
+            return;
+        }
+        try {
+            withLease(cmd.getGameID(), () -> {
+                run(cmd, session);
+                return null;
+            });
+        } catch (Exception ex) {
+            connections.send(session, new ErrorMessage(ex.getMessage()));
+        }
+    }
+
+    private void run(UserGameCommand cmd, Session session) {
+        try {
             switch (cmd.getCommandType()) {
                 case CONNECT -> onConnect(cmd, session);
-                case MAKE_MOVE -> {
-                    MakeMoveCommand moveCmd = gson.fromJson(ctx.message(), MakeMoveCommand.class);
-                    onMove(moveCmd, session);
-                }
+                case MAKE_MOVE -> onMove((MakeMoveCommand) cmd, session);
                 case LEAVE -> onLeave(cmd, session);
                 case RESIGN -> onResign(cmd, session);
+                case RESYNC -> onResync(cmd, session);
             }
         } catch (Exception ex) {
-            System.out.println("[WS ERROR] "+ ex.getMessage());
-            ErrorMessage err = new ErrorMessage("Invalid command format");
-            try{
-                ctx.session.getRemote().sendString(gson.toJson(err));
-            } catch(Exception ignore){}
+            sendCommandError(session, ex.getMessage());
+        }
+    }
+
+    /**
+     * Makes a change to a game from outside a WebSocket command, such as joining it
+     * over HTTP. The change runs in turn with the game's commands and holds its
+     * lease like they do, and the other nodes are told the game changed.
+     *
+     * @return what the change returned
+     * @throws Exception what the change threw, or why the lease couldn't be had
+     */
+    public <T> T change(int gameID, Callable<T> change) throws Exception {
+        var result = new CompletableFuture<T>();
+        games.submit(gameID, () -> {
+            try {
+                result.complete(withLease(gameID, () -> {
+                    T changed = change.call();
+                    // nothing for sessions to see, but other nodes' copies of the game are stale
+                    connections.broadcast(gameID, List.of());
+                    return changed;
+                }));
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw ex;
         }
     }
 
+    // only the node holding the game's lease changes it, and only for as long as the
+    // change takes; if another node had it last, the game may have moved on since
+    // this node loaded it
+    private <T> T withLease(int gameID, Callable<T> change) throws Exception {
+        if (events.claim(gameID)) {
+            service.evictGame(gameID);
+        }
+        try {
+            return change.call();
+        } finally {
+            events.release(gameID);
+        }
+    }
+
+    private void sendCommandError(Session session, String reason) {
+        System.out.println("[WS ERROR] "+ reason);
+        ErrorMessage err = new ErrorMessage("Invalid command format");
+        connections.send(session, err);
+    }
+
     @Override
     public void handleClose(@NotNull WsCloseContext ctx) {
         System.out.println("Websocket closed");
+        connections.closed(ctx.session);
+    }
+
+    private void loggedOut(String authToken) {
+        revoke(authToken);
+        try {
+            events.publishLogout(authToken);
+        } catch (DataAccessException ex) {
+            System.out.println("[WS ERROR] unable to publish logout: " + ex.getMessage());
+        }
+    }
+
+    // sessions that connected with a token that has since been logged out can't act on it any more
+    private void revoke(String authToken) {
+        for (Session session : connections.revoke(authToken)) {
+            connections.send(session, new ErrorMessage("You have been logged out."));
+        }
+    }
+
+    /**
+     * Finds who a command is from: the user its session connected to the game as, if
+     * the command is for that game and doesn't carry some other token, or else
+     * whoever the command's token belongs to. Binary clients leave the token out of
+     * commands after CONNECT.
+     */
+    private AuthData authorize(UserGameCommand cmd, Session session) throws Exception {
+        var binding = connections.binding(session);
+        String token = cmd.getAuthToken();
+        if (binding != null && binding.gameID() == cmd.getGameID()
+                && (token == null || token.equals(binding.auth().authToken()))) {
+            return binding.auth();
+        }
+        return service.validate(token);
     }
 
     private void onConnect(UserGameCommand cmd, Session session) throws Exception {
-        String auth = cmd.getAuthToken();
         int gameID = cmd.getGameID();
 
-        var user = service.validate(auth);
-        connections.add(gameID, session, auth);
+        var user = service.validate(cmd.getAuthToken());
+        GameData gameData = service.loadGame(gameID);
+        var playerColor = service.getPlayerColor(gameData, user.username());
+        connections.bind(session, new ConnectionManager.Binding(user, gameID, playerColor));
 
-        GameData gameData = service.getGame(auth, gameID);
         ChessGame game = gameData.game();
         LoadGameMessage msg = new LoadGameMessage(game);
 
-        session.getRemote().sendString(gson.toJson(msg));
-        var playerColor = service.getPlayerColor(gameData, user.username());
-        NotificationMessage joined = new NotificationMessage(service.validate(auth).username()
+        connections.send(session, msg);
+        NotificationMessage joined = new NotificationMessage(user.username()
                 + " (" + playerColor + ") "+"has joined.\n");
-        connections.broadcast(gameID, session, gson.toJson(joined));
+        connections.broadcast(gameID, session, joined);
     }
 
     private void onMove(MakeMoveCommand cmd, Session session) throws Exception{
-        String auth = cmd.getAuthToken();
         int gameID = cmd.getGameID();
         var move = cmd.getMove();
         var start = move.getStartPosition();
@@ -86,35 +233,50 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         var startSquare = String.valueOf(startFile)+start.getRow();
         var endSquare = String.valueOf(endFile)+end.getRow();
 
-        service.validate(auth);
+        var user = authorize(cmd, session);
 
         try{
-            ChessGame updated = service.applyMove(auth, gameID, move);
+            // commands for this game run one at a time, so nothing moves in between
+            ChessPiece captured = service.loadGame(gameID).game().getBoard().getPiece(end);
+            ChessGame updated = service.applyMove(user, gameID, move);
 
-            var username = service.validate(auth).username();
+            var username = user.username();
             var notifyText = username + " moved from " + startSquare + " to " + endSquare + "\n";
             var promotion = move.getPromotionPiece();
             if (promotion !=null){
                 notifyText+= " (promoted to "+promotion+")\n";
             }
             var notifyMsg = new NotificationMessage(notifyText);
-            var notifyJson = gson.toJson(notifyMsg);
+            List<ConnectionManager.Outgoing> messages = new ArrayList<>();
+            messages.add(new ConnectionManager.Outgoing(notifyMsg, session));
 
-            connections.broadcast(gameID,session,notifyJson);
-            GameData data = service.getGame(auth, gameID);
+            GameData data = service.loadGame(gameID);
             String statusMsg = detectGameState(updated, data);
             if (statusMsg!= null){
                 NotificationMessage statusNotice = new NotificationMessage(statusMsg);
-                connections.broadcast(gameID, null, gson.toJson(statusNotice));
+                messages.add(new ConnectionManager.Outgoing(statusNotice, null));
             }
 
             LoadGameMessage msg = new LoadGameMessage(updated);
-            String json = gson.toJson(msg);
+            MoveMessage delta = new MoveMessage(move, (captured == null)? null : captured.getPieceType(),
+                    updated.getPly(), updated.getZobristKey(), updated.getStatus(updated.getTeamTurn()));
+            messages.add(new ConnectionManager.Outgoing(msg, null, delta));
 
-            connections.broadcast(gameID, null, json);
+            connections.broadcast(gameID, messages);
         } catch (Exception e){
             ErrorMessage err = new ErrorMessage(e.getMessage());
-            session.getRemote().sendString(gson.toJson(err));
+            connections.send(session, err);
+        }
+    }
+
+    private void onResync(UserGameCommand cmd, Session session) throws Exception {
+        try {
+            authorize(cmd, session);
+            GameData gameData = service.loadGame(cmd.getGameID());
+            connections.send(session, new LoadGameMessage(gameData.game()));
+        } catch (Exception e) {
+            ErrorMessage err = new ErrorMessage(e.getMessage());
+            connections.send(session, err);
         }
     }
 
@@ -122,29 +284,22 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         ChessGame.TeamColor turn = game.getTeamTurn();
         var player = (turn == ChessGame.TeamColor.WHITE)? data.whiteUsername(): data.blackUsername();
 
-        if (game.isInCheckmate(turn)){
-            return player + " ("+ turn + ") is in CHECKMATE. Game over!";
-        }
-
-        if (game.isInStalemate(turn)){
-            return "STALEMATE. Game over!";
-        }
-        if(game.isInCheck(turn)){
-            return  player + " ("+turn + ") is in CHECK.";
-        }
-        return null;
+        return switch (game.getStatus(turn)){
+            case CHECKMATE -> player + " ("+ turn + ") is in CHECKMATE. Game over!";
+            case STALEMATE -> "STALEMATE. Game over!";
+            case CHECK -> player + " ("+turn + ") is in CHECK.";
+            case NORMAL -> null;
+        };
     }
 
     private void onLeave(UserGameCommand cmd, Session session) throws Exception{
         try{
             int gameID = cmd.getGameID();
-            var user = service.validate(cmd.getAuthToken());
-
-            var req = new LeaveResignRequest(user.authToken(), gameID);
-            service.leaveGame(req);
+            var user = authorize(cmd, session);
+            service.leaveGame(user, gameID);
             NotificationMessage notify = new NotificationMessage(user.username() + " has left the game.\n");
 
-            connections.broadcast(gameID, session, gson.toJson(notify));
+            connections.broadcast(gameID, session, notify);
             connections.remove(gameID, session);
         } catch (Exception e){
             if (e.getMessage().equals("You are not a player in this game.\n")){
@@ -152,7 +307,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
                 return;
             }
             ErrorMessage err = new ErrorMessage(e.getMessage());
-            session.getRemote().sendString(gson.toJson(err));
+            connections.send(session, err);
         }
     }
 
@@ -160,21 +315,25 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         try{
             int gameID = cmd.getGameID();
 
-            var user = service.validate(cmd.getAuthToken());
-            var req = new LeaveResignRequest(user.authToken(), gameID);
-            service.resignGame(req);
+            var user = authorize(cmd, session);
+            service.resignGame(user, gameID);
 
             NotificationMessage notify = new NotificationMessage(user.username() + " has resigned.\n");
 
-            connections.broadcast(gameID, null, gson.toJson(notify));
+            connections.broadcast(gameID, null, notify);
 
             connections.remove(gameID, session);
         } catch (Exception e){
             ErrorMessage err = new ErrorMessage(e.getMessage());
-            session.getRemote().sendString(gson.toJson(err));
+            connections.send(session, err);
         }
     }
 
+    public void stop() {
+        games.close();
+        connections.close();
+    }
+
     private char convertColumn(int col){
         return (char)('a' + (col-1));
     }
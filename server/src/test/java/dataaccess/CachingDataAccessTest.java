@@ -0,0 +1,132 @@
+package dataaccess;
+
+import chess.ChessMove;
+import chess.ChessPosition;
+import datamodel.AuthData;
+import datamodel.GameData;
+import datamodel.GameSpec;
+import exception.ResponseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingDataAccessTest {
+    private CountingDataAccess delegate;
+    private CachingDataAccess db;
+
+    private static class CountingDataAccess extends MemoryDataAccess {
+        int gameReads;
+        int authReads;
+        boolean failAppend;
+
+        @Override
+        public GameData getGame(int gameID) throws ResponseException {
+            gameReads++;
+            return super.getGame(gameID);
+        }
+
+        @Override
+        public AuthData getAuth(String authToken) {
+            authReads++;
+            return super.getAuth(authToken);
+        }
+
+        @Override
+        public void appendMove(int gameID, int ply, ChessMove move) throws ResponseException {
+            if (failAppend) {
+                throw new RuntimeException("database unavailable");
+            }
+            super.appendMove(gameID, ply, move);
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        delegate = new CountingDataAccess();
+        db = new CachingDataAccess(delegate);
+    }
+
+    @Test
+    void getGamePositive() throws ResponseException {
+        int gameID = db.createGame("game");
+        var first = db.getLiveGame(gameID);
+        var second = db.getLiveGame(gameID);
+        assertSame(first, second);
+        assertNotSame(first.game(), db.getGame(gameID).game());
+        assertEquals(1, delegate.gameReads);
+    }
+
+    @Test
+    void readersGetLastWrittenBoard() throws Exception {
+        int gameID = db.createGame("game");
+        var live = db.getLiveGame(gameID).game();
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        live.makeMove(move);
+        assertEquals(0, db.getGame(gameID).game().getPly());
+
+        db.appendMove(gameID, 1, move);
+        var copy = db.getGame(gameID).game();
+        assertEquals(live, copy);
+        copy.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        assertEquals(1, live.getPly());
+    }
+
+    @Test
+    void getGameNegative() throws ResponseException {
+        assertNull(db.getGame(99));
+        assertNull(db.getGame(99));
+        assertEquals(2, delegate.gameReads);
+    }
+
+    @Test
+    void joinInvalidates() throws ResponseException {
+        int gameID = db.createGame("game");
+        db.getGame(gameID);
+        db.joinGame("white", new GameSpec("WHITE", gameID));
+        assertEquals("white", db.getGame(gameID).whiteUsername());
+        assertEquals(2, delegate.gameReads);
+    }
+
+    @Test
+    void updateWritesThrough() throws ResponseException {
+        int gameID = db.createGame("game");
+        var game = db.getGame(gameID);
+        var over = new GameData(gameID, null, null, "game", game.game(), true);
+        db.updateGame(over);
+        assertTrue(db.getGame(gameID).gameOver());
+        assertEquals(1, delegate.gameReads);
+    }
+
+    @Test
+    void failedAppendInvalidates() throws ResponseException {
+        int gameID = db.createGame("game");
+        db.getGame(gameID);
+        delegate.failAppend = true;
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        assertThrows(RuntimeException.class, () -> db.appendMove(gameID, 1, move));
+        db.getGame(gameID);
+        assertEquals(2, delegate.gameReads);
+    }
+
+    @Test
+    void getAuthPositive() throws ResponseException {
+        db.createAuth(new AuthData("alice", "token"));
+        assertEquals("alice", db.getAuth("token").username());
+        assertEquals("alice", db.getAuth("token").username());
+        assertEquals(1, delegate.authReads);
+
+        db.deleteAuth("token");
+        assertNull(db.getAuth("token"));
+    }
+
+    @Test
+    void getAuthNegative() throws ResponseException {
+        assertNull(db.getAuth("guess"));
+        assertNull(db.getAuth("guess"));
+        assertEquals(1, delegate.authReads);
+
+        db.createAuth(new AuthData("alice", "guess"));
+        assertEquals("alice", db.getAuth("guess").username());
+    }
+}
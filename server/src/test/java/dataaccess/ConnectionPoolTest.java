@@ -0,0 +1,184 @@
+package dataaccess;
+
+import exception.DataAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    private final List<FakeConnection> opened = new ArrayList<>();
+
+    // stands in for a JDBC connection, tracking only what the pool touches
+    private static class FakeConnection {
+        boolean closed;
+        boolean valid = true;
+        boolean autoCommit = true;
+        boolean rolledBack;
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (p, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "isValid" -> valid && !closed;
+                        case "getAutoCommit" -> autoCommit;
+                        case "setAutoCommit" -> {
+                            autoCommit = (Boolean) args[0];
+                            yield null;
+                        }
+                        case "rollback" -> {
+                            rolledBack = true;
+                            yield null;
+                        }
+                        case "getCatalog" -> "chess";
+                        default -> null;
+                    });
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        opened.clear();
+    }
+
+    private ConnectionPool pool(int size, Duration lifetime, Duration validation) {
+        return pool(size, lifetime, validation, 100);
+    }
+
+    private ConnectionPool pool(int size, Duration lifetime, Duration validation, int maxWaiting) {
+        var settings = new ConnectionPool.Settings(size, Duration.ofMillis(50), Duration.ofMinutes(10), lifetime,
+                validation, maxWaiting);
+        return new ConnectionPool(() -> {
+            var fake = new FakeConnection();
+            opened.add(fake);
+            return fake.proxy();
+        }, settings);
+    }
+
+    @Test
+    void reusePositive() throws Exception {
+        var pool = pool(2, Duration.ofMinutes(30), Duration.ofMinutes(1));
+        try (var conn = pool.getConnection()) {
+            assertEquals("chess", conn.getCatalog());
+        }
+        try (var conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+        assertEquals(1, opened.size());
+        assertFalse(opened.getFirst().closed);
+    }
+
+    @Test
+    void reuseNegative() throws Exception {
+        var pool = pool(2, Duration.ofMinutes(30), Duration.ofMinutes(1));
+        var conn = pool.getConnection();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::getCatalog);
+        // closing twice must not hand the same connection back twice
+        conn.close();
+        assertEquals(1, pool.getStats().idle());
+    }
+
+    @Test
+    void racingClosesReturnOnce() throws Exception {
+        var pool = pool(1, Duration.ofMinutes(30), Duration.ofMinutes(1));
+        for (int round = 0; round < 20; round++) {
+            var conn = pool.getConnection();
+            var start = new CountDownLatch(1);
+            List<Thread> closers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                closers.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                        conn.close();
+                    } catch (InterruptedException | SQLException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Thread closer : closers) {
+                closer.join();
+            }
+            assertEquals(0, pool.getStats().active());
+            assertEquals(1, pool.getStats().idle());
+        }
+        try (var ignored = pool.getConnection()) {
+            assertThrows(DataAccessException.class, pool::getConnection, "only one permit");
+        }
+    }
+
+    @Test
+    void borrowTimeout() throws Exception {
+        var pool = pool(1, Duration.ofMinutes(30), Duration.ofMinutes(1));
+        try (var ignored = pool.getConnection()) {
+            assertEquals(1, pool.getStats().active());
+            assertThrows(DataAccessException.class, pool::getConnection);
+        }
+        assertEquals(0, pool.getStats().active());
+        assertEquals(1, pool.getStats().borrows());
+    }
+
+    @Test
+    void waitingLimit() throws Exception {
+        var pool = pool(1, Duration.ofMinutes(30), Duration.ofMinutes(1), 0);
+        try (var ignored = pool.getConnection()) {
+            var ex = assertThrows(DataAccessException.class, pool::getConnection);
+            assertTrue(ex.getMessage().startsWith("too many"));
+        }
+        try (var conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+    }
+
+    @Test
+    void expiredConnectionReplaced() throws Exception {
+        var pool = pool(1, Duration.ZERO, Duration.ofMinutes(1));
+        pool.getConnection().close();
+        pool.getConnection().close();
+        assertEquals(2, opened.size());
+        assertTrue(opened.getFirst().closed);
+    }
+
+    @Test
+    void invalidConnectionReplaced() throws Exception {
+        var pool = pool(1, Duration.ofMinutes(30), Duration.ZERO);
+        pool.getConnection().close();
+        opened.getFirst().valid = false;
+        pool.getConnection().close();
+        assertEquals(2, opened.size());
+        assertTrue(opened.getFirst().closed);
+    }
+
+    @Test
+    void transactionResetOnReturn() throws Exception {
+        var pool = pool(1, Duration.ofMinutes(30), Duration.ofMinutes(1));
+        try (var conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+        }
+        assertTrue(opened.getFirst().rolledBack);
+        assertTrue(opened.getFirst().autoCommit);
+    }
+
+    @Test
+    void closeReleasesIdle() throws Exception {
+        var pool = pool(2, Duration.ofMinutes(30), Duration.ofMinutes(1));
+        pool.getConnection().close();
+        pool.close();
+        assertTrue(opened.getFirst().closed);
+        assertThrows(DataAccessException.class, pool::getConnection);
+    }
+}
@@ -1,5 +1,8 @@
 package dataaccess;
 
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
 import datamodel.*;
 import exception.DataAccessException;
 import exception.ResponseException;
@@ -8,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import datamodel.UserData;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.UUID;
 
 class DataAccessTest {
@@ -209,4 +213,57 @@ class DataAccessTest {
         var foundGame = db.getGame(222);
         assertNull(foundGame);
     }
-}
\ No newline at end of file
+
+    @Test
+    void appendMovePositive() throws ResponseException {
+        int gameID = db.createGame("newGameName");
+        var first = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var second = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+        db.appendMove(gameID, 1, first);
+        db.appendMove(gameID, 2, second);
+
+        assertEquals(List.of(first, second), db.getMoves(gameID));
+        var game = db.getGame(gameID).game();
+        assertEquals(2, game.getPly());
+        assertEquals(ChessPiece.PieceType.PAWN, game.getBoard().getPiece(new ChessPosition(5, 5)).getPieceType());
+    }
+
+    @Test
+    void appendMoveNegative() throws ResponseException {
+        int gameID = db.createGame("newGameName");
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        db.appendMove(gameID, 1, move);
+        assertThrows(ResponseException.class, ()-> db.appendMove(gameID, 1, move));
+        assertThrows(ResponseException.class, ()-> db.appendMove(222, 1, move));
+    }
+
+    @Test
+    void listGamesPagedPositive() throws ResponseException {
+        for (int i = 0; i < 5; i++) {
+            db.createGame("game" + i);
+        }
+        var first = db.listGames(GameFilter.ALL, 0, 2);
+        assertEquals(2, first.games().length);
+        assertNotNull(first.nextCursor());
+        assertNull(first.games()[0].game());
+
+        var second = db.listGames(GameFilter.ALL, first.nextCursor(), 2);
+        var third = db.listGames(GameFilter.ALL, second.nextCursor(), 2);
+        assertEquals(1, third.games().length);
+        assertNull(third.nextCursor());
+        assertEquals("game4", third.games()[0].gameName());
+    }
+
+    @Test
+    void listGamesPagedNegative() throws ResponseException {
+        int gameID = db.createGame("newGame1");
+        db.resignGame("nobody", gameID);
+        db.createGame("newGame2");
+
+        var finished = db.listGames(GameFilter.FINISHED, 0, 10);
+        assertEquals(1, finished.games().length);
+        assertEquals(gameID, finished.games()[0].gameID());
+        assertEquals(0, db.listGames(GameFilter.ACTIVE, 0, 10).games().length);
+        assertNull(db.listGames(GameFilter.OPEN, 0, 10).nextCursor());
+    }
+}
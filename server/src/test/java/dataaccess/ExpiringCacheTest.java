@@ -0,0 +1,75 @@
+package dataaccess;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCacheTest {
+
+    @Test
+    void getPositive() throws Exception {
+        var cache = new ExpiringCache<Integer, String>(10, Duration.ofMinutes(1), false);
+        var loads = new AtomicInteger();
+        assertEquals("1", cache.get(1, key -> String.valueOf(loads.incrementAndGet())));
+        assertEquals("1", cache.get(1, key -> String.valueOf(loads.incrementAndGet())));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getNegative() throws Exception {
+        var cache = new ExpiringCache<Integer, String>(10, Duration.ofMinutes(1), false);
+        assertNull(cache.get(1, key -> null));
+        assertEquals(0, cache.size());
+        assertThrows(IllegalStateException.class, () -> cache.get(2, key -> {
+            throw new IllegalStateException("load failed");
+        }));
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    void expiry() {
+        var cache = new ExpiringCache<Integer, String>(10, Duration.ZERO, false);
+        cache.put(1, "one");
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void sizeBound() {
+        var cache = new ExpiringCache<Integer, String>(3, Duration.ofMinutes(1), false);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, String.valueOf(i));
+        }
+        assertEquals(3, cache.size());
+        assertNull(cache.get(0));
+        assertEquals("9", cache.get(9));
+
+        // replacing an entry must not let its old eviction slot remove the new value
+        cache.put(7, "seven");
+        cache.put(10, "10");
+        assertEquals("seven", cache.get(7));
+    }
+
+    @Test
+    void readsKeepEntriesCached() {
+        var cache = new ExpiringCache<Integer, String>(4, Duration.ofMinutes(1), true);
+        cache.put(0, "hot");
+        for (int i = 1; i <= 100; i++) {
+            cache.put(i, String.valueOf(i));
+            assertEquals("hot", cache.get(0), "after " + i + " writes");
+        }
+        assertEquals(4, cache.size());
+        assertNull(cache.get(1));
+        assertEquals("100", cache.get(100));
+    }
+
+    @Test
+    void invalidate() {
+        var cache = new ExpiringCache<Integer, String>(10, Duration.ofMinutes(1), true);
+        cache.put(1, "one");
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+    }
+}
@@ -0,0 +1,48 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameStateMigrationTest {
+
+    @Test
+    void parseBitboardJson() throws Exception {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        var parsed = GameStateMigration.parseLegacy(new Gson().toJson(game));
+        assertEquals(game, parsed);
+        assertEquals(ChessGame.TeamColor.BLACK, parsed.getTeamTurn());
+    }
+
+    @Test
+    void parseArrayBoardJson() {
+        var rows = new StringBuilder();
+        for (int row = 1; row <= 8; row++) {
+            rows.append(row > 1 ? "," : "").append("[");
+            for (int col = 1; col <= 8; col++) {
+                rows.append(col > 1 ? "," : "");
+                rows.append(row == 1 && col == 5 ? "{\"pieceColor\":\"WHITE\",\"type\":\"KING\"}"
+                        : row == 8 && col == 5 ? "{\"pieceColor\":\"BLACK\",\"type\":\"KING\"}" : "null");
+            }
+            rows.append("]");
+        }
+        var json = "{\"currentTurn\":\"WHITE\",\"squares\":{\"squares\":[" + rows + "]}}";
+
+        var parsed = GameStateMigration.parseLegacy(json);
+        var board = parsed.getBoard();
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING), board.getPiece(new ChessPosition(1, 5)));
+        assertEquals(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING), board.getPiece(new ChessPosition(8, 5)));
+        assertNull(board.getPiece(new ChessPosition(2, 5)));
+    }
+
+    @Test
+    void parseMalformedJson() {
+        assertThrows(RuntimeException.class, () -> GameStateMigration.parseLegacy("{\"currentTurn\":\"WHITE\"}"));
+    }
+}
@@ -0,0 +1,133 @@
+package dataaccess;
+
+import exception.DataAccessException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalGameEventBusTest {
+
+    @Test
+    void eventsReachOtherNodes() throws DataAccessException {
+        var hub = new LocalGameEventBus.Hub();
+        var first = new LocalGameEventBus(hub);
+        var second = new LocalGameEventBus(hub);
+        List<String> firstHeard = new ArrayList<>();
+        List<String> secondHeard = new ArrayList<>();
+        first.subscribe((gameID, event) -> firstHeard.add(gameID + ":" + new String(event)));
+        second.subscribe((gameID, event) -> secondHeard.add(gameID + ":" + new String(event)));
+
+        first.publish(3, "moved".getBytes());
+        assertEquals(List.of(), firstHeard);
+        assertEquals(List.of("3:moved"), secondHeard);
+
+        second.close();
+        first.publish(3, "again".getBytes());
+        assertEquals(List.of("3:moved"), secondHeard);
+    }
+
+    @Test
+    void logoutsReachOtherNodes() {
+        var hub = new LocalGameEventBus.Hub();
+        var first = new LocalGameEventBus(hub);
+        var second = new LocalGameEventBus(hub);
+        List<String> firstHeard = new ArrayList<>();
+        List<String> secondHeard = new ArrayList<>();
+        first.subscribe(new GameEventBus.Listener() {
+            @Override
+            public void onEvent(int gameID, byte[] event) {
+                fail("no game event was published");
+            }
+
+            @Override
+            public void onLogout(String authToken) {
+                firstHeard.add(authToken);
+            }
+        });
+        second.subscribe(new GameEventBus.Listener() {
+            @Override
+            public void onEvent(int gameID, byte[] event) {
+                fail("no game event was published");
+            }
+
+            @Override
+            public void onLogout(String authToken) {
+                secondHeard.add(authToken);
+            }
+        });
+
+        first.publishLogout("token");
+        assertEquals(List.of(), firstHeard);
+        assertEquals(List.of("token"), secondHeard);
+    }
+
+    @Test
+    void releasedLeasesPassStraightOver() throws DataAccessException {
+        var hub = new LocalGameEventBus.Hub(Duration.ofMinutes(1));
+        var first = new LocalGameEventBus(hub);
+        var second = new LocalGameEventBus(hub);
+
+        assertTrue(first.claim(1));
+        first.release(1);
+        assertFalse(first.claim(1), "nobody else changed game 1");
+        first.release(1);
+
+        long start = System.nanoTime();
+        assertTrue(second.claim(1), "game 1 moved from the first node");
+        second.release(1);
+        assertTrue(first.claim(1), "game 1 moved back");
+        first.release(1);
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos(), "didn't wait for the lease");
+
+        second.release(1);
+        assertFalse(first.claim(1), "releasing a lease held elsewhere does nothing");
+    }
+
+    @Test
+    void unreleasedLeasesRunOut() throws DataAccessException {
+        var hub = new LocalGameEventBus.Hub(Duration.ofMillis(100));
+        var first = new LocalGameEventBus(hub);
+        var second = new LocalGameEventBus(hub);
+
+        assertTrue(first.claim(1));
+        long start = System.nanoTime();
+        assertTrue(second.claim(1), "the first node's lease ran out");
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos(), "waited for the lease");
+    }
+
+    @Test
+    void claimsWaitForRelease() throws Exception {
+        var hub = new LocalGameEventBus.Hub(Duration.ofMinutes(1));
+        var first = new LocalGameEventBus(hub);
+        var second = new LocalGameEventBus(hub);
+
+        assertTrue(second.claim(1));
+        Thread releaser = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            second.release(1);
+        });
+        long start = System.nanoTime();
+        assertTrue(first.claim(1));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(10).toNanos(), "taken once released");
+        releaser.join();
+    }
+
+    @Test
+    void closeReleasesLeases() throws DataAccessException {
+        var hub = new LocalGameEventBus.Hub(Duration.ofMinutes(1));
+        var first = new LocalGameEventBus(hub);
+        var second = new LocalGameEventBus(hub);
+
+        first.claim(1);
+        first.close();
+        assertTrue(second.claim(1));
+    }
+}
@@ -0,0 +1,160 @@
+package dataaccess;
+
+import chess.ChessMove;
+import chess.ChessPosition;
+import datamodel.*;
+import exception.ResponseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryDataAccessTest {
+    private MemoryDataAccess db;
+
+    @BeforeEach
+    void setup() {
+        db = new MemoryDataAccess();
+    }
+
+    @Test
+    void createUserNegative() {
+        db.createUser(new UserData("chase", "c@c.com", "pwd"));
+        var ex = assertThrows(RuntimeException.class, () -> db.createUser(new UserData("chase", "c@c.com", "pwd")));
+        assertTrue(ex.getMessage().toLowerCase().contains("duplicate"));
+    }
+
+    @Test
+    void deleteAuthNegative() {
+        var ex = assertThrows(ResponseException.class, () -> db.deleteAuth("wrongAuth"));
+        assertTrue(ex.getMessage().toLowerCase().contains("not found"));
+        assertNull(db.getAuth(null));
+    }
+
+    @Test
+    void joinGamePositive() throws ResponseException {
+        int gameID = db.createGame("game");
+        db.joinGame("white", new GameSpec("WHITE", gameID));
+        db.joinGame("black", new GameSpec("black", gameID));
+        var game = db.getGame(gameID);
+        assertEquals("white", game.whiteUsername());
+        assertEquals("black", game.blackUsername());
+    }
+
+    @Test
+    void joinGameNegative() throws ResponseException {
+        int gameID = db.createGame("game");
+        db.joinGame("white", new GameSpec("WHITE", gameID));
+        var ex = assertThrows(ResponseException.class, () -> db.joinGame("other", new GameSpec("WHITE", gameID)));
+        assertTrue(ex.getMessage().contains("already taken"));
+        assertThrows(ResponseException.class, () -> db.joinGame("other", new GameSpec("green", gameID)));
+        assertEquals("white", db.getGame(gameID).whiteUsername());
+    }
+
+    @Test
+    void leaveAndResign() throws ResponseException {
+        int gameID = db.createGame("game");
+        db.joinGame("white", new GameSpec("WHITE", gameID));
+        db.joinGame("black", new GameSpec("BLACK", gameID));
+        db.leaveGame("white", gameID);
+        assertNull(db.getGame(gameID).whiteUsername());
+        assertEquals("black", db.getGame(gameID).blackUsername());
+
+        db.resignGame("black", gameID);
+        assertTrue(db.getGame(gameID).gameOver());
+    }
+
+    @Test
+    void updateGameKeepsSeats() throws ResponseException {
+        int gameID = db.createGame("game");
+        db.joinGame("white", new GameSpec("WHITE", gameID));
+        var game = db.getGame(gameID);
+        db.updateGame(new GameData(gameID, null, null, "renamed", game.game(), true));
+        var updated = db.getGame(gameID);
+        assertEquals("white", updated.whiteUsername());
+        assertEquals("game", updated.gameName());
+        assertTrue(updated.gameOver());
+    }
+
+    @Test
+    void readersGetTheirOwnBoard() throws Exception {
+        int gameID = db.createGame("game");
+        var first = db.getGame(gameID);
+        assertNotSame(first.game(), db.getGame(gameID).game());
+
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        first.game().makeMove(move);
+        assertEquals(0, db.getGame(gameID).game().getPly(), "a reader's changes stay its own");
+
+        db.appendMove(gameID, 1, move);
+        assertEquals(first.game().getBoard(), db.getGame(gameID).game().getBoard());
+        db.updateGame(first);
+        var reply = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+        db.appendMove(gameID, 2, reply);
+        assertEquals(2, db.getGame(gameID).game().getPly());
+    }
+
+    @Test
+    void appendMoveNegative() throws ResponseException {
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        assertThrows(ResponseException.class, () -> db.appendMove(99, 1, move));
+
+        int gameID = db.createGame("game");
+        db.appendMove(gameID, 1, move);
+        assertThrows(ResponseException.class, () -> db.appendMove(gameID, 1, move));
+        assertEquals(List.of(move), db.getMoves(gameID));
+    }
+
+    @Test
+    void listGamesPaged() {
+        for (int i = 0; i < 5; i++) {
+            db.createGame("game" + i);
+        }
+        var first = db.listGames(GameFilter.ALL, 0, 3);
+        assertEquals(3, first.games().length);
+        var second = db.listGames(GameFilter.ALL, first.nextCursor(), 3);
+        assertEquals(2, second.games().length);
+        assertNull(second.nextCursor());
+        assertNull(second.games()[0].game());
+    }
+
+    @Test
+    void concurrentJoinsSeatOnePlayer() throws Exception {
+        int gameID = db.createGame("game");
+        int players = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(players);
+        var start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> joins = new ArrayList<>();
+            for (int i = 0; i < players; i++) {
+                String username = "player" + i;
+                joins.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        db.joinGame(username, new GameSpec("WHITE", gameID));
+                        return true;
+                    } catch (ResponseException ex) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int seated = 0;
+            for (var join : joins) {
+                seated += join.get(10, TimeUnit.SECONDS)? 1 : 0;
+            }
+            assertEquals(1, seated);
+            assertNotNull(db.getGame(gameID).whiteUsername());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package service;
+import dataaccess.MemoryDataAccess;
 import dataaccess.MySqlDataAccess;
+import datamodel.AuthData;
 import datamodel.GameSpec;
 import datamodel.RegisterResponse;
 import datamodel.UserData;
@@ -7,6 +9,9 @@ import exception.DataAccessException;
 import exception.ResponseException;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class UserServiceTest {
@@ -89,6 +94,20 @@ class UserServiceTest {
         assertNull(db.getAuth(auth.authToken()));
     }
 
+    @Test
+    void logoutNotifiesListeners() throws Exception{
+        var db = new MySqlDataAccess();
+        var service = new UserService(db);
+        var loggedOut = new ArrayList<String>();
+        service.addLogoutListener(loggedOut::add);
+        service.register(new UserData("ben", "jamin@c","password"));
+        var auth = service.login("ben", "password");
+
+        assertThrows(Exception.class, () -> service.logout("badToken"));
+        service.logout(auth.authToken());
+        assertEquals(List.of(auth.authToken()), loggedOut);
+    }
+
     @Test
     void logoutNegative() throws ResponseException, DataAccessException {
         var db = new MySqlDataAccess();
@@ -141,6 +160,19 @@ class UserServiceTest {
         assertTrue(games.length>= 1);
     }
 
+    @Test
+    void listGamesFollowsPages() throws Exception {
+        var db = new MemoryDataAccess();
+        var service = new UserService(db);
+        db.createAuth(new AuthData("please", "token"));
+        for (int i = 0; i <= UserService.MAX_PAGE_SIZE; i++) {
+            db.createGame("Game" + i);
+        }
+
+        assertEquals(UserService.MAX_PAGE_SIZE + 1, service.listGames("token").length);
+        assertEquals(UserService.DEFAULT_PAGE_SIZE, service.listGames("token", null, null, null).games().length);
+    }
+
     @Test
     void listGamesNegative() throws ResponseException, DataAccessException {
         var db = new MySqlDataAccess();
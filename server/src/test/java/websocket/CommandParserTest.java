@@ -0,0 +1,90 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.MoveMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandParserTest {
+    private final Gson gson = new Gson();
+
+    @Test
+    void readsWhatGsonWrites() {
+        var connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 7);
+        var parsed = CommandParser.parse(gson.toJson(connect));
+        assertNull(parsed.error());
+        assertEquals(connect, parsed.command());
+
+        var move = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN);
+        parsed = CommandParser.parse(gson.toJson(new MakeMoveCommand("token", 7, move)));
+        assertNull(parsed.error());
+        var command = assertInstanceOf(MakeMoveCommand.class, parsed.command());
+        assertEquals(UserGameCommand.CommandType.MAKE_MOVE, command.getCommandType());
+        assertEquals("token", command.getAuthToken());
+        assertEquals(move, command.getMove());
+    }
+
+    @Test
+    void registeredAdaptersWriteLikeGson() {
+        var move = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN);
+        var command = new MakeMoveCommand("token", 7, move);
+        assertEquals(gson.toJson(command), CommandParser.GSON.toJson(command));
+        var parsed = assertInstanceOf(MakeMoveCommand.class, CommandParser.parse(CommandParser.GSON.toJson(command)).command());
+        assertEquals(move, parsed.getMove());
+
+        var delta = new MoveMessage(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null),
+                null, 1, 42L, ChessGame.GameStatus.NORMAL);
+        assertEquals(gson.toJson(delta), CommandParser.GSON.toJson(delta));
+    }
+
+    @Test
+    void fieldsInAnyOrder() {
+        var parsed = CommandParser.parse("{\"gameID\":3,\"move\":{\"endPosition\":{\"col\":5,\"row\":4},"
+                + "\"startPosition\":{\"row\":2,\"col\":5},\"promotionPiece\":null},\"extra\":[1,2],"
+                + "\"commandType\":\"MAKE_MOVE\",\"authToken\":\"t\"}");
+        var command = assertInstanceOf(MakeMoveCommand.class, parsed.command());
+        assertEquals(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), command.getMove());
+    }
+
+    @Test
+    void numbersAsStringsLikeGson() {
+        var json = "{\"commandType\":\"CONNECT\",\"authToken\":\"t\",\"gameID\":\"3\"}";
+        assertEquals(gson.fromJson(json, UserGameCommand.class), CommandParser.parse(json).command());
+        var move = CommandParser.parse("{\"commandType\":\"MAKE_MOVE\",\"gameID\":3,"
+                + "\"move\":{\"startPosition\":{\"row\":\"2\",\"col\":5},\"endPosition\":{\"row\":4,\"col\":5}}}");
+        assertEquals(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null),
+                assertInstanceOf(MakeMoveCommand.class, move.command()).getMove());
+    }
+
+    @Test
+    void reportsMalformedCommands() {
+        assertFailed("not json", "{\"commandType\":");
+        assertFailed("array", "[1]");
+        assertFailed("unknown type", "{\"commandType\":\"DANCE\",\"gameID\":1}");
+        assertFailed("no type", "{\"gameID\":1}");
+        assertFailed("no game", "{\"commandType\":\"CONNECT\"}");
+        assertFailed("fractional game", "{\"commandType\":\"CONNECT\",\"gameID\":1.5}");
+        assertFailed("word for a game", "{\"commandType\":\"CONNECT\",\"gameID\":\"one\"}");
+        assertFailed("fractional string game", "{\"commandType\":\"CONNECT\",\"gameID\":\"1.5\"}");
+        assertFailed("no move", "{\"commandType\":\"MAKE_MOVE\",\"gameID\":1}");
+        assertFailed("off the board", "{\"commandType\":\"MAKE_MOVE\",\"gameID\":1,"
+                + "\"move\":{\"startPosition\":{\"row\":0,\"col\":1},\"endPosition\":{\"row\":1,\"col\":1}}}");
+        assertFailed("bad promotion", "{\"commandType\":\"MAKE_MOVE\",\"gameID\":1,"
+                + "\"move\":{\"startPosition\":{\"row\":7,\"col\":1},\"endPosition\":{\"row\":8,\"col\":1},"
+                + "\"promotionPiece\":\"DRAGON\"}}");
+        assertFailed("trailing", "{\"commandType\":\"LEAVE\",\"gameID\":1} {}");
+    }
+
+    private static void assertFailed(String why, String json) {
+        var parsed = CommandParser.parse(json);
+        assertNull(parsed.command(), why);
+        assertNotNull(parsed.error(), why);
+    }
+}
@@ -0,0 +1,410 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dataaccess.LocalGameEventBus;
+import datamodel.AuthData;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import websocket.messages.*;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionManagerTest {
+    private ConnectionManager connections;
+
+    /**
+     * A session whose writes complete at once, or only when the test says so. Frames
+     * sent to it are recorded as labels: a notification's text, the type of other
+     * messages (with the ply for LOAD_GAME) and BATCH[...] around batched ones.
+     */
+    private static class FakeSession {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final List<WriteCallback> pending = new ArrayList<>();
+        final boolean stalled;
+        boolean open = true;
+
+        FakeSession(boolean stalled) {
+            this.stalled = stalled;
+        }
+
+        Session proxy() {
+            RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (p, method, args) -> {
+                        if (method.getName().startsWith("send") && args.length == 2) {
+                            sent.add((args[0] instanceof String text)? label(text) : label((ByteBuffer) args[0]));
+                            var callback = (WriteCallback) args[1];
+                            if (stalled) {
+                                pending.add(callback);
+                            } else {
+                                callback.writeSuccess();
+                            }
+                        }
+                        return null;
+                    });
+            return (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Session.class}, (p, method, args) -> switch (method.getName()) {
+                        case "getRemote" -> remote;
+                        case "isOpen" -> open;
+                        case "close" -> {
+                            open = false;
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(p);
+                        case "equals" -> p == args[0];
+                        default -> null;
+                    });
+        }
+
+        void completeWrite() {
+            pending.removeFirst().writeSuccess();
+        }
+
+        private static String label(String text) {
+            JsonObject json = JsonParser.parseString(text).getAsJsonObject();
+            if (json.get("serverMessageType").getAsString().equals("BATCH")) {
+                List<String> labels = new ArrayList<>();
+                json.getAsJsonArray("messages").forEach(m -> labels.add(label(m.toString())));
+                return "BATCH" + labels;
+            }
+            return switch (json.get("serverMessageType").getAsString()) {
+                case "NOTIFICATION" -> json.get("message").getAsString();
+                case "LOAD_GAME" -> "LOAD_GAME " + json.getAsJsonObject("game").get("ply").getAsInt();
+                default -> json.get("serverMessageType").getAsString();
+            };
+        }
+
+        private static String label(ByteBuffer frame) {
+            boolean batch = frame.get(1) == ServerMessage.ServerMessageType.BATCH.ordinal();
+            List<String> labels = new ArrayList<>();
+            for (ServerMessage message : BinaryCodec.decodeMessages(frame)) {
+                labels.add(switch (message) {
+                    case NotificationMessage note -> note.getMessage();
+                    case LoadGameMessage load -> "LOAD_GAME " + load.getGame().getPly();
+                    default -> message.getServerMessageType().name();
+                });
+            }
+            return batch? "BATCH" + labels : labels.getFirst();
+        }
+    }
+
+    private static NotificationMessage note(String text) {
+        return new NotificationMessage(text);
+    }
+
+    // a game after the knights have hopped out and back ply times
+    private static LoadGameMessage board(int ply) {
+        ChessPosition[][] hops = {
+                {new ChessPosition(1, 2), new ChessPosition(3, 3)},
+                {new ChessPosition(8, 2), new ChessPosition(6, 3)},
+                {new ChessPosition(3, 3), new ChessPosition(1, 2)},
+                {new ChessPosition(6, 3), new ChessPosition(8, 2)}};
+        var game = new ChessGame();
+        try {
+            for (int i = 0; i < ply; i++) {
+                game.makeMove(new ChessMove(hops[i % 4][0], hops[i % 4][1], null));
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return new LoadGameMessage(game);
+    }
+
+    @BeforeEach
+    void setup() {
+        connections = new ConnectionManager();
+    }
+
+    @Test
+    void broadcastPositive() {
+        var first = new FakeSession(false);
+        var second = new FakeSession(false);
+        var firstSession = first.proxy();
+        connections.add(1, firstSession, "a");
+        connections.add(1, second.proxy(), "b");
+
+        connections.broadcast(1, firstSession, note("hello"));
+        connections.broadcast(1, null, board(0));
+        assertEquals(List.of("LOAD_GAME 0"), first.sent);
+        assertEquals(List.of("hello", "LOAD_GAME 0"), second.sent);
+    }
+
+    @Test
+    void slowSessionDoesNotBlockOthers() {
+        var slow = new FakeSession(true);
+        var fast = new FakeSession(false);
+        connections.add(1, slow.proxy(), "a");
+        connections.add(1, fast.proxy(), "b");
+
+        connections.broadcast(1, null, note("one"));
+        connections.broadcast(1, null, note("two"));
+        assertEquals(List.of("one", "two"), fast.sent);
+        assertEquals(List.of("one"), slow.sent);
+
+        slow.completeWrite();
+        assertEquals(List.of("one", "two"), slow.sent);
+    }
+
+    @Test
+    void staleBoardsDropped() {
+        var slow = new FakeSession(true);
+        connections.add(1, slow.proxy(), "a");
+
+        connections.broadcast(1, null, note("note"));
+        connections.broadcast(1, null, board(1));
+        connections.broadcast(1, null, note("note2"));
+        connections.broadcast(1, null, board(2));
+        slow.completeWrite();
+        slow.completeWrite();
+        slow.completeWrite();
+        assertEquals(List.of("note", "note2", "LOAD_GAME 2"), slow.sent);
+    }
+
+    @Test
+    void slowSessionDisconnected() {
+        var slow = new FakeSession(true);
+        connections.add(1, slow.proxy(), "a");
+        for (int i = 0; i <= ConnectionManager.MAX_QUEUED_FRAMES + 1; i++) {
+            connections.broadcast(1, null, note("note" + i));
+        }
+        assertFalse(slow.open);
+        assertNull(connections.games.get(1));
+    }
+
+    @Test
+    void batchedBroadcast() {
+        var mover = new FakeSession(false);
+        var batching = new FakeSession(false);
+        var plain = new FakeSession(false);
+        var moverSession = mover.proxy();
+        var batchingSession = batching.proxy();
+        connections.open(moverSession, new ClientOptions(true, false, false));
+        connections.open(batchingSession, new ClientOptions(true, false, false));
+        connections.add(1, moverSession, "a");
+        connections.add(1, batchingSession, "b");
+        connections.add(1, plain.proxy(), "c");
+
+        connections.broadcast(1, List.of(
+                new ConnectionManager.Outgoing(note("moved"), moverSession),
+                new ConnectionManager.Outgoing(board(1), null)));
+        assertEquals(List.of("BATCH[moved, LOAD_GAME 1]"), batching.sent);
+        // one message left for the mover, so there is nothing to batch
+        assertEquals(List.of("LOAD_GAME 1"), mover.sent);
+        assertEquals(List.of("moved", "LOAD_GAME 1"), plain.sent);
+    }
+
+    @Test
+    void deltasReplaceBoards() {
+        var deltas = new FakeSession(false);
+        var plain = new FakeSession(false);
+        var deltaSession = deltas.proxy();
+        connections.open(deltaSession, new ClientOptions(false, true, false));
+        connections.add(1, deltaSession, "a");
+        connections.add(1, plain.proxy(), "b");
+
+        var move = new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null);
+        var game = board(1).getGame();
+        var delta = new MoveMessage(move, null, 1, game.getZobristKey(), ChessGame.GameStatus.NORMAL);
+        connections.broadcast(1, List.of(
+                new ConnectionManager.Outgoing(note("moved"), null),
+                new ConnectionManager.Outgoing(new LoadGameMessage(game), null, delta)));
+        assertEquals(List.of("moved", "MOVE"), deltas.sent);
+        assertEquals(List.of("moved", "LOAD_GAME 1"), plain.sent);
+    }
+
+    @Test
+    void binaryClients() {
+        var binary = new FakeSession(false);
+        var batching = new FakeSession(false);
+        var binarySession = binary.proxy();
+        var batchingSession = batching.proxy();
+        connections.open(binarySession, new ClientOptions(false, false, true));
+        connections.open(batchingSession, new ClientOptions(true, false, true));
+        connections.add(1, binarySession, "a");
+        connections.add(1, batchingSession, "b");
+
+        connections.send(binarySession, new ErrorMessage("bad move"));
+        connections.broadcast(1, List.of(
+                new ConnectionManager.Outgoing(note("moved"), null),
+                new ConnectionManager.Outgoing(board(1), null)));
+        assertEquals(List.of("ERROR", "moved", "LOAD_GAME 1"), binary.sent);
+        assertEquals(List.of("BATCH[moved, LOAD_GAME 1]"), batching.sent);
+    }
+
+    @Test
+    void revokeUnbindsSessions() {
+        var white = new FakeSession(false);
+        var black = new FakeSession(false);
+        var whiteSession = white.proxy();
+        var blackSession = black.proxy();
+        var whiteBinding = new ConnectionManager.Binding(new AuthData("w", "a"), 1, "white");
+        connections.bind(whiteSession, whiteBinding);
+        connections.bind(blackSession, new ConnectionManager.Binding(new AuthData("b", "b"), 1, "black"));
+        assertEquals(whiteBinding, connections.binding(whiteSession));
+
+        assertEquals(List.of(whiteSession), connections.revoke("a"));
+        assertNull(connections.binding(whiteSession));
+        assertEquals(List.of(), connections.revoke("a"));
+        connections.broadcast(1, null, note("hello"));
+        assertEquals(List.of(), white.sent);
+        assertEquals(List.of("hello"), black.sent);
+    }
+
+    @Test
+    void closedLeavesBoundGame() {
+        var fake = new FakeSession(false);
+        var other = new FakeSession(false);
+        var session = fake.proxy();
+        connections.bind(session, new ConnectionManager.Binding(new AuthData("w", "a"), 1, "white"));
+        connections.add(1, other.proxy(), "b");
+
+        connections.closed(session);
+        assertNull(connections.binding(session));
+        assertEquals(List.of(), connections.revoke("a"));
+        connections.broadcast(1, null, note("hello"));
+        assertEquals(List.of(), fake.sent);
+        assertEquals(List.of("hello"), other.sent);
+    }
+
+    @Test
+    void bindingFollowsGame() {
+        var fake = new FakeSession(false);
+        var session = fake.proxy();
+        var auth = new AuthData("w", "a");
+        connections.bind(session, new ConnectionManager.Binding(auth, 1, "white"));
+        connections.bind(session, new ConnectionManager.Binding(auth, 2, "black"));
+        connections.broadcast(1, null, note("one"));
+        connections.broadcast(2, null, note("two"));
+        assertEquals(List.of("two"), fake.sent);
+
+        connections.remove(1, session);
+        assertEquals(2, connections.binding(session).gameID());
+        connections.remove(2, session);
+        assertNull(connections.binding(session));
+        assertEquals(List.of(), connections.revoke("a"));
+    }
+
+    @Test
+    void broadcastReachesOtherNodes() {
+        var hub = new LocalGameEventBus.Hub();
+        var other = new ConnectionManager(new LocalGameEventBus(hub));
+        connections = new ConnectionManager(new LocalGameEventBus(hub));
+        var here = new FakeSession(false);
+        var there = new FakeSession(false);
+        var deltas = new FakeSession(false);
+        var hereSession = here.proxy();
+        var deltaSession = deltas.proxy();
+        connections.add(1, hereSession, "a");
+        other.add(1, there.proxy(), "b");
+        other.open(deltaSession, new ClientOptions(false, true, false));
+        other.add(1, deltaSession, "c");
+
+        var game = board(1).getGame();
+        var delta = new MoveMessage(new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null),
+                null, 1, game.getZobristKey(), ChessGame.GameStatus.NORMAL);
+        connections.broadcast(1, List.of(
+                new ConnectionManager.Outgoing(note("moved"), hereSession),
+                new ConnectionManager.Outgoing(new LoadGameMessage(game), null, delta)));
+        assertEquals(List.of("LOAD_GAME 1"), here.sent);
+        assertEquals(List.of("moved", "LOAD_GAME 1"), there.sent);
+        assertEquals(List.of("moved", "MOVE"), deltas.sent);
+    }
+
+    @Test
+    void observersGetCoalescedBoards() throws InterruptedException {
+        connections = new ConnectionManager(new LocalGameEventBus(), Duration.ofMillis(100));
+        var player = new FakeSession(false);
+        var observer = new FakeSession(false);
+        var deltaObserver = new FakeSession(false);
+        var observerSession = observer.proxy();
+        var deltaSession = deltaObserver.proxy();
+        connections.bind(player.proxy(), new ConnectionManager.Binding(new AuthData("w", "a"), 1, "white"));
+        connections.bind(observerSession, new ConnectionManager.Binding(new AuthData("o", "b"), 1, "observer"));
+        connections.open(deltaSession, new ClientOptions(false, true, false));
+        connections.bind(deltaSession, new ConnectionManager.Binding(new AuthData("d", "c"), 1, "observer"));
+
+        for (int ply = 1; ply <= 3; ply++) {
+            var game = board(ply).getGame();
+            var delta = new MoveMessage(new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null),
+                    null, ply, game.getZobristKey(), ChessGame.GameStatus.NORMAL);
+            connections.broadcast(1, List.of(
+                    new ConnectionManager.Outgoing(note("move " + ply), null),
+                    new ConnectionManager.Outgoing(new LoadGameMessage(game), null, delta)));
+        }
+        assertEquals(List.of("move 1", "LOAD_GAME 1", "move 2", "LOAD_GAME 2", "move 3", "LOAD_GAME 3"),
+                player.sent);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while ((observer.sent.size() < 4 || deltaObserver.sent.size() < 4) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("move 1", "move 2", "move 3", "LOAD_GAME 3"), observer.sent);
+        assertEquals(List.of("move 1", "move 2", "move 3", "LOAD_GAME 3"), deltaObserver.sent);
+        connections.close();
+    }
+
+    @Test
+    void observersGetBoardAsBroadcast() throws Exception {
+        connections = new ConnectionManager(new LocalGameEventBus(), Duration.ofMillis(100));
+        var player = new FakeSession(false);
+        var observer = new FakeSession(false);
+        connections.bind(player.proxy(), new ConnectionManager.Binding(new AuthData("w", "a"), 1, "white"));
+        connections.bind(observer.proxy(), new ConnectionManager.Binding(new AuthData("o", "b"), 1, "observer"));
+
+        var game = board(1).getGame();
+        connections.broadcast(1, List.of(new ConnectionManager.Outgoing(new LoadGameMessage(game), null)));
+        // the game goes on before the observers' flush
+        game.makeMove(new ChessMove(new ChessPosition(8, 2), new ChessPosition(6, 3), null));
+        assertEquals(List.of("LOAD_GAME 1"), player.sent);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (observer.sent.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("LOAD_GAME 1"), observer.sent);
+        connections.close();
+    }
+
+    @Test
+    void observersRejoiningGetBoards() throws InterruptedException {
+        connections = new ConnectionManager(new LocalGameEventBus(), Duration.ofMillis(50));
+        var observer = new FakeSession(false);
+        var session = observer.proxy();
+        var binding = new ConnectionManager.Binding(new AuthData("o", "b"), 1, "observer");
+        connections.bind(session, binding);
+        connections.broadcast(1, null, board(1));
+        connections.remove(1, session);
+        connections.bind(session, binding);
+        connections.broadcast(1, null, board(2));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (!observer.sent.contains("LOAD_GAME 2") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(observer.sent.contains("LOAD_GAME 2"), observer.sent.toString());
+        connections.close();
+    }
+
+    @Test
+    void collapseKeepsSingleDelta() {
+        var game = board(1).getGame();
+        var delta = new MoveMessage(new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null),
+                null, 1, game.getZobristKey(), ChessGame.GameStatus.NORMAL);
+        var pending = List.of(new ConnectionManager.Outgoing(note("moved"), null),
+                new ConnectionManager.Outgoing(new LoadGameMessage(game), null, delta));
+        assertEquals(pending, ConnectionManager.collapse(pending));
+    }
+}
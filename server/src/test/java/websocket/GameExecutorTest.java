@@ -0,0 +1,80 @@
+package websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameExecutorTest {
+    private GameExecutor executor;
+
+    @BeforeEach
+    void setup() {
+        executor = new GameExecutor();
+    }
+
+    @AfterEach
+    void teardown() {
+        executor.close();
+    }
+
+    @Test
+    void sameGameRunsInOrder() throws InterruptedException {
+        int tasks = 1000;
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        var inside = new AtomicInteger();
+        var overlapped = new AtomicInteger();
+        var done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            int n = i;
+            executor.submit(1, () -> {
+                if (inside.incrementAndGet() > 1) {
+                    overlapped.incrementAndGet();
+                }
+                ran.add(n);
+                inside.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlapped.get());
+        assertEquals(IntStream.range(0, tasks).boxed().toList(), ran);
+    }
+
+    @Test
+    void gamesRunInParallel() throws InterruptedException {
+        var firstStarted = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var secondRan = new CountDownLatch(1);
+        executor.submit(1, () -> {
+            firstStarted.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+        executor.submit(2, secondRan::countDown);
+        // game 2 is not held up behind game 1's blocked task
+        assertTrue(secondRan.await(10, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void failedTaskDoesNotStopGame() throws InterruptedException {
+        var ran = new CountDownLatch(1);
+        executor.submit(1, () -> {
+            throw new IllegalStateException("boom");
+        });
+        executor.submit(1, ran::countDown);
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,44 @@
+package websocket;
+
+import dataaccess.CachingDataAccess;
+import dataaccess.LocalGameEventBus;
+import dataaccess.MemoryDataAccess;
+import datamodel.AuthData;
+import datamodel.GameSpec;
+import datamodel.LeaveResignRequest;
+import org.junit.jupiter.api.Test;
+import service.UserService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketHandlerTest {
+
+    @Test
+    void httpChangesReachOtherNodes() throws Exception {
+        // two nodes caching games from one database
+        var database = new MemoryDataAccess();
+        database.createAuth(new AuthData("alice", "token"));
+        int gameID = database.createGame("game");
+        var hub = new LocalGameEventBus.Hub();
+        var first = new UserService(new CachingDataAccess(database));
+        var second = new UserService(new CachingDataAccess(database));
+        var firstHandler = new WebSocketHandler(first, new LocalGameEventBus(hub));
+        var secondHandler = new WebSocketHandler(second, new LocalGameEventBus(hub));
+
+        assertNull(second.getGame("token", gameID).whiteUsername());
+        firstHandler.change(gameID, () -> first.joinGame("token", new GameSpec("white", gameID)));
+        assertEquals("alice", second.getGame("token", gameID).whiteUsername());
+
+        firstHandler.change(gameID, () -> {
+            first.resignGame(new LeaveResignRequest("token", gameID));
+            return null;
+        });
+        assertTrue(second.getGame("token", gameID).gameOver());
+
+        var failure = assertThrows(Exception.class,
+                () -> secondHandler.change(gameID, () -> second.joinGame("token", new GameSpec("black", gameID))));
+        assertEquals("Game already finished", failure.getMessage());
+        firstHandler.stop();
+        secondHandler.stop();
+    }
+}
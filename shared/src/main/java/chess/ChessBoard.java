@@ -1,19 +1,55 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
  * <p>
+ * The board is stored as bitboards: one 64-bit mask per colored piece type plus
+ * an occupancy mask per team. Bit {@code (row-1)*8 + (col-1)} is set when a piece
+ * stands on that square, so a1 is bit 0 and h8 is bit 63.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
 public class ChessBoard {
-    private final ChessPiece[][] squares = new ChessPiece[8][8];
+    private static final int TYPES = ChessPiece.PieceType.values().length;
+    private static final ChessPiece[] PIECES = new ChessPiece[TYPES * 2];
+    private static final int NONE = 0xF;
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                PIECES[index(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
+    private final long[] pieces = new long[TYPES * 2];
+    private final long[] occupancy = new long[2];
+
+    // packed records of moves made with makeMove, newest last; see move()
+    private transient int[] undoStack = new int[16];
+    private transient int undoDepth;
+    // bumped on every change so callers can tell when something they derived from the board is stale
+    private transient int version;
+    // Zobrist key of the pieces, updated with each change once it has been computed;
+    // left invalid on construction since Gson fills in the masks afterwards
+    private transient long key;
+    private transient boolean keyValid;
+
     public ChessBoard() {
     }
 
+    /**
+     * Creates a copy of another board
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        copyFrom(other);
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -21,8 +57,9 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow()-1][position.getColumn()-1] = piece;
+        setPiece(square(position), piece);
     }
+
     /**
      * Gets a chess piece on the chessboard
      *
@@ -31,27 +68,31 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        return squares[position.getRow()-1][position.getColumn()-1];
+        return getPiece(square(position));
     }
 
     public ChessPosition getKingLocation(ChessGame.TeamColor color){
-        for (int row = 1; row<9; row++){
-            for (int col = 1; col< 9; col++){
-                ChessPosition pos = new ChessPosition(row, col);
-                if (!isEmpty(pos) && getPiece(pos).getPieceType() == ChessPiece.PieceType.KING && getPiece(pos).getTeamColor() == color){
-                    return pos;
-                }
-            }
-        }
-        return null;
+        int square = getKingSquare(color);
+        return (square < 0)? null : position(square);
+    }
+
+    /**
+     * Determines if any piece of the given team attacks a square
+     *
+     * @param position the square to test
+     * @param attacker the team doing the attacking
+     * @return True if a piece of the attacking team could capture on that square
+     */
+    public boolean isAttacked(ChessPosition position, ChessGame.TeamColor attacker) {
+        return isAttacked(square(position), attacker);
     }
 
     public void clearBoard(){
-        for (int row = 0; row<8; row++){
-            for (int col = 0; col< 8; col++){
-                 squares[row][col] = null;
-            }
-        }
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(occupancy, 0L);
+        version++;
+        key = 0;
+        keyValid = true;
     }
 
     /**
@@ -99,7 +140,7 @@ public class ChessBoard {
     }
 
     public boolean isEmpty(ChessPosition position){
-        return (squares[position.getRow()-1][position.getColumn()-1] == null);
+        return isEmpty(square(position));
     }
 
     public boolean inBounds(ChessPosition position){
@@ -108,16 +149,215 @@ public class ChessBoard {
         return row>=1 && row<=8 && col>=1 && col<=8;
     }
 
+    /**
+     * @return mask of every square holding a piece of the given color and type
+     */
+    public long getPieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieces[index(color, type)];
+    }
+
+    /**
+     * @return mask of every square holding a piece of the given color
+     */
+    public long getOccupancy(ChessGame.TeamColor color) {
+        return occupancy[color.ordinal()];
+    }
+
+    /**
+     * @return mask of every occupied square
+     */
+    public long getOccupied() {
+        return occupancy[0] | occupancy[1];
+    }
+
+    /**
+     * Overwrites this board with the contents of another board
+     *
+     * @param other the board to copy
+     */
+    public void copyFrom(ChessBoard other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+        undoDepth = 0;
+        version++;
+        key = other.key;
+        keyValid = other.keyValid;
+    }
+
+    /**
+     * Gets the Zobrist key of the pieces on this board. Equal boards always have
+     * equal keys; different boards have different keys with overwhelming probability.
+     *
+     * @return 64-bit hash of every piece and its square
+     */
+    public long getZobristKey() {
+        if (!keyValid) {
+            key = 0;
+            for (int i = 0; i < pieces.length; i++) {
+                for (long bits = pieces[i]; bits != 0; bits &= bits - 1) {
+                    key ^= Zobrist.PIECE_SQUARE[i][Long.numberOfTrailingZeros(bits)];
+                }
+            }
+            keyValid = true;
+        }
+        return key;
+    }
+
+    /**
+     * Plays a move in place and remembers how to take it back with {@link #unmakeMove()}.
+     * The move is not checked for legality.
+     *
+     * @param move the move to play; its promotion piece replaces the moving piece
+     */
+    void makeMove(ChessMove move) {
+        int record = move(square(move.getStartPosition()), square(move.getEndPosition()), move.getPromotionPiece());
+        if (undoDepth == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoDepth * 2);
+        }
+        undoStack[undoDepth++] = record;
+    }
+
+    /**
+     * Takes back the most recent move played with {@link #makeMove(ChessMove)}
+     */
+    void unmakeMove() {
+        int record = undoStack[--undoDepth];
+        int from = record & 0x3F;
+        int to = (record >>> 6) & 0x3F;
+        int moved = (record >>> 12) & 0xF;
+        int captured = (record >>> 16) & 0xF;
+
+        setPiece(to, (captured == NONE)? null : PIECES[captured]);
+        setPiece(from, PIECES[moved]);
+    }
+
+    /**
+     * Plays a move in place without recording it for undo
+     */
+    void movePiece(int from, int to, ChessPiece.PieceType promotion) {
+        move(from, to, promotion);
+    }
+
+    // undo record layout: from square (6 bits) | to square (6) | moved piece index (4) | captured piece index (4)
+    private int move(int from, int to, ChessPiece.PieceType promotion) {
+        version++;
+        int moved = indexAt(from);
+        int captured = indexAt(to);
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+        int color = moved / TYPES;
+
+        int placed = (promotion == null)? moved : color * TYPES + promotion.ordinal();
+
+        if (captured != NONE) {
+            pieces[captured] &= ~toBit;
+            occupancy[captured / TYPES] &= ~toBit;
+            key ^= Zobrist.PIECE_SQUARE[captured][to];
+        }
+        pieces[moved] &= ~fromBit;
+        occupancy[color] &= ~fromBit;
+        pieces[placed] |= toBit;
+        occupancy[color] |= toBit;
+        key ^= Zobrist.PIECE_SQUARE[moved][from] ^ Zobrist.PIECE_SQUARE[placed][to];
+
+        return from | to << 6 | moved << 12 | captured << 16;
+    }
+
+    private int indexAt(int square) {
+        long bit = 1L << square;
+        if ((getOccupied() & bit) == 0) {
+            return NONE;
+        }
+        int first = ((occupancy[0] & bit) != 0)? 0 : TYPES;
+        for (int i = first; i < first + TYPES; i++) {
+            if ((pieces[i] & bit) != 0) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    // the king mask is kept up to date by every move, so the king's square is just its lowest set bit
+    int getKingSquare(ChessGame.TeamColor color) {
+        long kings = pieces[index(color, ChessPiece.PieceType.KING)];
+        return (kings == 0)? -1 : Long.numberOfTrailingZeros(kings);
+    }
+
+    // looks outward from the square: a piece of the attacking team can reach it exactly
+    // when the same piece type standing on the square could reach that piece
+    boolean isAttacked(int square, ChessGame.TeamColor attacker) {
+        int base = attacker.ordinal() * TYPES;
+        ChessGame.TeamColor defender = (attacker == ChessGame.TeamColor.WHITE)? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long occupied = getOccupied();
+        long queens = pieces[base + ChessPiece.PieceType.QUEEN.ordinal()];
+
+        return (Attacks.pawn(defender, square) & pieces[base + ChessPiece.PieceType.PAWN.ordinal()]) != 0
+                || (Attacks.knight(square) & pieces[base + ChessPiece.PieceType.KNIGHT.ordinal()]) != 0
+                || (Attacks.king(square) & pieces[base + ChessPiece.PieceType.KING.ordinal()]) != 0
+                || (Attacks.bishop(square, occupied) & (pieces[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens)) != 0
+                || (Attacks.rook(square, occupied) & (pieces[base + ChessPiece.PieceType.ROOK.ordinal()] | queens)) != 0;
+    }
+
+    ChessPiece getPiece(int square) {
+        int index = indexAt(square);
+        return (index == NONE)? null : PIECES[index];
+    }
+
+    void setPiece(int square, ChessPiece piece) {
+        version++;
+        long bit = 1L << square;
+        int previous = indexAt(square);
+        if (previous != NONE) {
+            pieces[previous] &= ~bit;
+            occupancy[previous / TYPES] &= ~bit;
+            key ^= Zobrist.PIECE_SQUARE[previous][square];
+        }
+        if (piece != null) {
+            int index = index(piece.getTeamColor(), piece.getPieceType());
+            pieces[index] |= bit;
+            occupancy[piece.getTeamColor().ordinal()] |= bit;
+            key ^= Zobrist.PIECE_SQUARE[index][square];
+        }
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    boolean isEmpty(int square) {
+        return (getOccupied() & (1L << square)) == 0;
+    }
+
+    static ChessPiece piece(int index) {
+        return PIECES[index];
+    }
+
+    static int index(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * TYPES + type.ordinal();
+    }
+
+    static int square(ChessPosition position) {
+        return (position.getRow()-1) * 8 + (position.getColumn()-1);
+    }
+
+    static int square(int row, int col) {
+        return (row-1) * 8 + (col-1);
+    }
+
+    static ChessPosition position(int square) {
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof ChessBoard that)) {
             return false;
         }
-        return Objects.deepEquals(squares, that.squares);
+        return Arrays.equals(pieces, that.pieces);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return Long.hashCode(getZobristKey());
     }
 }
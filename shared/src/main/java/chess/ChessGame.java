@@ -12,6 +12,13 @@ public class ChessGame {
 
     private TeamColor currentTurn;
     private ChessBoard squares;
+    // moves made since the start of the game
+    private int ply;
+
+    // legal moves and status for each team, valid while the board is unchanged since cachedVersion
+    private transient Analysis[] analysis = new Analysis[2];
+    private transient ChessBoard cachedBoard;
+    private transient int cachedVersion;
 
     public ChessGame() {
         squares = new ChessBoard();
@@ -20,14 +27,15 @@ public class ChessGame {
 
     }
 
+    // takes ownership of the board rather than copying it
+    ChessGame(ChessBoard board, TeamColor turn, int ply) {
+        squares = board;
+        currentTurn = turn;
+        this.ply = ply;
+    }
+
     private ChessBoard deepCopy(ChessBoard original){
-        ChessBoard copy = new ChessBoard();
-        for (int row = 1; row<9; row++){
-            for (int col = 1; col< 9; col++){
-                copy.addPiece(new ChessPosition(row, col), original.getPiece(new ChessPosition(row,col)));
-            }
-        }
-        return copy;
+        return new ChessBoard(original);
     }
 
     /**
@@ -37,6 +45,13 @@ public class ChessGame {
         return currentTurn;
     }
 
+    /**
+     * @return how many moves have been made in this game
+     */
+    public int getPly() {
+        return ply;
+    }
+
     /**
      * Set's which teams turn it is
      *
@@ -54,6 +69,19 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * Enum identifying where a team stands in the current position
+     */
+    public enum GameStatus {
+        NORMAL,
+        CHECK,
+        CHECKMATE,
+        STALEMATE
+    }
+
+    private record Analysis(List<ChessMove> moves, GameStatus status) {
+    }
+
     /**
      * Gets a valid moves for a piece at the given location
      *
@@ -67,24 +95,69 @@ public class ChessGame {
         }
 
         ChessPiece piece = squares.getPiece(startPosition);
-        TeamColor pieceColor = piece.getTeamColor();
-
-        Collection <ChessMove> rawMoves =  (squares.getPiece(startPosition).pieceMoves(squares, startPosition));
         HashSet<ChessMove> legalMoves = new HashSet<>();
-
-        for (ChessMove move: rawMoves){
-            ChessBoard savedCopy = deepCopy(squares);
-            applyMove(move, squares);
-
-            if (!isInCheck(pieceColor)){
+        for (ChessMove move : analyze(piece.getTeamColor()).moves()){
+            if (move.getStartPosition().equals(startPosition)){
                 legalMoves.add(move);
             }
-            setBoard(savedCopy);
         }
-
         return legalMoves;
     }
 
+    /**
+     * Gets every valid move for a team in the current position
+     *
+     * @param teamColor the team to get valid moves for
+     * @return unmodifiable list of the team's valid moves
+     */
+    public List<ChessMove> getLegalMoves(TeamColor teamColor) {
+        return analyze(teamColor).moves();
+    }
+
+    /**
+     * Gets whether a team is in check, checkmate, or stalemate
+     *
+     * @param teamColor the team to get the status of
+     * @return the team's status in the current position
+     */
+    public GameStatus getStatus(TeamColor teamColor) {
+        return analyze(teamColor).status();
+    }
+
+    private Analysis analyze(TeamColor teamColor) {
+        if (cachedBoard != squares || cachedVersion != squares.getVersion()){
+            Arrays.fill(analysis, null);
+            cachedBoard = squares;
+        }
+        Analysis result = analysis[teamColor.ordinal()];
+        if (result == null){
+            List<ChessMove> legalMoves = new ArrayList<>();
+            for (long own = squares.getOccupancy(teamColor); own != 0; own &= own - 1){
+                ChessPosition pos = ChessBoard.position(Long.numberOfTrailingZeros(own));
+                for (ChessMove move : squares.getPiece(pos).pieceMoves(squares, pos)){
+                    squares.makeMove(move);
+                    if (!isInCheck(teamColor)){
+                        legalMoves.add(move);
+                    }
+                    squares.unmakeMove();
+                }
+            }
+
+            boolean inCheck = isInCheck(teamColor);
+            GameStatus status;
+            if (legalMoves.isEmpty()){
+                status = inCheck? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+            } else {
+                status = inCheck? GameStatus.CHECK : GameStatus.NORMAL;
+            }
+            result = new Analysis(Collections.unmodifiableList(legalMoves), status);
+            analysis[teamColor.ordinal()] = result;
+        }
+        // make/unmake above bump the version even though they leave the board as it was
+        cachedVersion = squares.getVersion();
+        return result;
+    }
+
     public void applyMove(ChessMove move, ChessBoard board){
         ChessPosition start = move.getStartPosition();
         ChessPosition end = move.getEndPosition();
@@ -112,22 +185,19 @@ public class ChessGame {
             throw new InvalidMoveException();
         }
 
-        // make move now that it's good
-        applyMove(move, squares);
-
-        // crap need to handle promotions too
-        ChessPiece movedPiece = squares.getPiece(move.getEndPosition());
-        if (movedPiece.getPieceType() == ChessPiece.PieceType.PAWN){
-            int promotionRow = (movedPiece.getTeamColor()== TeamColor.WHITE)? 8 :1;
+        // make move now that it's good, promoting pawns that reach the last row
+        ChessPiece.PieceType promotionPiece = null;
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN){
+            int promotionRow = (piece.getTeamColor()== TeamColor.WHITE)? 8 :1;
             if(move.getEndPosition().getRow() == promotionRow){
-                ChessPiece.PieceType promotionPiece = move.getPromotionPiece();
+                promotionPiece = move.getPromotionPiece();
                 if (promotionPiece == null){
                     promotionPiece = ChessPiece.PieceType.QUEEN;
                 }
-                ChessPiece promotion = new ChessPiece(movedPiece.getTeamColor(),promotionPiece);
-                squares.addPiece(move.getEndPosition(),promotion);
             }
         }
+        squares.movePiece(ChessBoard.square(start), ChessBoard.square(move.getEndPosition()), promotionPiece);
+        ply++;
 
         //passed and move made, now I can change color
         if (currentTurn == TeamColor.WHITE){
@@ -144,29 +214,12 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        ChessPosition kingPos = squares.getKingLocation(teamColor);
-        
-        for (int row = 1; row<9; row++){
-            for (int col = 1; col< 9; col++){
-                ChessPosition opPos = new ChessPosition(row, col);
-                if (movesHelper(teamColor, opPos, kingPos)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private boolean movesHelper(TeamColor teamColor, ChessPosition opPos, ChessPosition kingPos) {
-        if (!squares.isEmpty(opPos) && squares.getPiece(opPos).getTeamColor()!= teamColor) {
-            Collection<ChessMove> opMoves = squares.getPiece(opPos).pieceMoves(squares, opPos);
-            for (ChessMove opMove : opMoves){
-                if (opMove.getEndPosition().equals(kingPos)){
-                    return true;
-                }
-            }
+        int kingSquare = squares.getKingSquare(teamColor);
+        if (kingSquare < 0){
+            return false;
         }
-        return false;
+        TeamColor opponent = (teamColor == TeamColor.WHITE)? TeamColor.BLACK : TeamColor.WHITE;
+        return squares.isAttacked(kingSquare, opponent);
     }
 
     /**
@@ -175,31 +228,10 @@ public class ChessGame {
      * @param teamColor which team to check for checkmate
      * @return True if the specified team is in checkmate
      */
-
-    private boolean checkHelper(TeamColor teamColor) {
-        for (int row = 1; row<9; row++){
-            for (int col = 1; col< 9; col++){
-                ChessPosition opPos = new ChessPosition(row, col);
-                if (!squares.isEmpty(opPos) && squares.getPiece(opPos).getTeamColor()==teamColor) {
-                    if(!validMoves(opPos).isEmpty()){
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
-    }
-
     public boolean isInCheckmate(TeamColor teamColor) {
-        if (!isInCheck(teamColor)){
-            return false;
-        }
-
-        return checkHelper(teamColor);
+        return getStatus(teamColor) == GameStatus.CHECKMATE;
     }
 
-
-
     /**
      * Determines if the given team is in stalemate, which here is defined as having
      * no valid moves while not in check.
@@ -208,10 +240,19 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        if (isInCheck(currentTurn)){
-            return false;
-        }
-        return checkHelper(teamColor);
+        return getStatus(teamColor) == GameStatus.STALEMATE;
+    }
+
+    /**
+     * Gets the Zobrist key of the current position, covering every piece and which
+     * team is to move. It is kept up to date as moves are made, so it is cheap to
+     * use as a key for position caches or to spot repeated positions.
+     *
+     * @return 64-bit hash of the position
+     */
+    public long getZobristKey() {
+        long key = squares.getZobristKey();
+        return (currentTurn == TeamColor.BLACK)? key ^ Zobrist.BLACK_TO_MOVE : key;
     }
 
     /**
@@ -242,6 +283,6 @@ public class ChessGame {
 
     @Override
     public int hashCode() {
-        return Objects.hash(currentTurn, squares);
+        return Long.hashCode(getZobristKey());
     }
 }
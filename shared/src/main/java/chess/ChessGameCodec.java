@@ -0,0 +1,92 @@
+package chess;
+
+/**
+ * Compact binary form of a {@link ChessGame} for storage.
+ * <p>
+ * Layout: one format version byte, then 32 bytes holding the 64 squares a nibble
+ * each (a1 in the low nibble of the first byte through h8 in the high nibble of the
+ * last; 0 is empty, otherwise the piece's board index plus one), then one byte for
+ * the team to move, then two bytes (big-endian) for the number of moves made.
+ * There are no castling or en passant bytes since the game has neither. Version 1,
+ * which had no move count, can still be read.
+ * <p>
+ * Single moves pack into 15 bits for the move log: the start square, the end
+ * square shifted left 6, and the promotion piece's ordinal plus one shifted left 12.
+ */
+public final class ChessGameCodec {
+    public static final byte VERSION = 2;
+    public static final int LENGTH = 36;
+
+    private static final int BOARD_OFFSET = 1;
+    private static final int TURN_OFFSET = BOARD_OFFSET + 32;
+    private static final int PLY_OFFSET = TURN_OFFSET + 1;
+    private static final int VERSION_1_LENGTH = 34;
+
+    private ChessGameCodec() {
+    }
+
+    public static byte[] encode(ChessGame game) {
+        byte[] bytes = new byte[LENGTH];
+        bytes[0] = VERSION;
+        ChessBoard board = game.getBoard();
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                int nibble = ChessBoard.index(color, type) + 1;
+                for (long bits = board.getPieces(color, type); bits != 0; bits &= bits - 1) {
+                    int square = Long.numberOfTrailingZeros(bits);
+                    bytes[BOARD_OFFSET + square / 2] |= (byte) (nibble << ((square & 1) * 4));
+                }
+            }
+        }
+        bytes[TURN_OFFSET] = (byte) game.getTeamTurn().ordinal();
+        bytes[PLY_OFFSET] = (byte) (game.getPly() >>> 8);
+        bytes[PLY_OFFSET + 1] = (byte) game.getPly();
+        return bytes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a game written by {@link #encode}
+     */
+    public static ChessGame decode(byte[] bytes) {
+        boolean current = bytes.length == LENGTH && bytes[0] == VERSION;
+        if (!current && !(bytes.length == VERSION_1_LENGTH && bytes[0] == 1)) {
+            throw new IllegalArgumentException("Not an encoded chess game");
+        }
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            int nibble = (bytes[BOARD_OFFSET + square / 2] >>> ((square & 1) * 4)) & 0xF;
+            if (nibble > 12) {
+                throw new IllegalArgumentException("Bad piece code " + nibble + " in encoded chess game");
+            }
+            if (nibble != 0) {
+                board.setPiece(square, ChessBoard.piece(nibble - 1));
+            }
+        }
+        int turn = bytes[TURN_OFFSET];
+        if (turn < 0 || turn > 1) {
+            throw new IllegalArgumentException("Bad team to move in encoded chess game");
+        }
+        int ply = current? ((bytes[PLY_OFFSET] & 0xFF) << 8) | (bytes[PLY_OFFSET + 1] & 0xFF) : 0;
+        return new ChessGame(board, ChessGame.TeamColor.values()[turn], ply);
+    }
+
+    public static short encodeMove(ChessMove move) {
+        ChessPiece.PieceType promotion = move.getPromotionPiece();
+        int code = ChessBoard.square(move.getStartPosition())
+                | ChessBoard.square(move.getEndPosition()) << 6
+                | ((promotion == null)? 0 : promotion.ordinal() + 1) << 12;
+        return (short) code;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value was not written by {@link #encodeMove}
+     */
+    public static ChessMove decodeMove(int code) {
+        int promotion = (code >>> 12) & 0xF;
+        if (code < 0 || code > 0x7FFF || promotion > ChessPiece.PieceType.values().length) {
+            throw new IllegalArgumentException("Not an encoded chess move: " + code);
+        }
+        return new ChessMove(ChessBoard.position(code & 0x3F), ChessBoard.position((code >>> 6) & 0x3F),
+                (promotion == 0)? null : ChessPiece.PieceType.values()[promotion - 1]);
+    }
+}
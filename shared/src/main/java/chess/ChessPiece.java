@@ -54,20 +54,7 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        ChessPiece piece = board.getPiece(myPosition);
-        MoveGenerator generator = new MoveGenerator(board);
-        if (piece.getPieceType()== PieceType.BISHOP){
-            return generator.getSlidingMoves(myPosition, new int [][]{{1,1}, {1,-1}, {-1,1}, {-1,-1}});
-        } else if (piece.getPieceType()== PieceType.ROOK){
-            return generator.getSlidingMoves(myPosition, new int[][] {{1,0}, {0,1}, {-1,0}, {0,-1}});
-        } else if (piece.getPieceType()== PieceType.QUEEN || piece.getPieceType()== PieceType.KING){
-            return generator.getSlidingMoves(myPosition, new int[][] {{1,0}, {0,1}, {-1,0}, {0,-1}, {1,1}, {1,-1}, {-1,1}, {-1,-1}});
-        } else if (piece.getPieceType() == PieceType.PAWN){
-            return generator.getPawnMoves(myPosition);
-        } else {
-            return generator.getSlidingMoves(myPosition, new int[][]{{1, 2}, {-1, -2}, {-1, 2}, {1, -2}, {2, 1},
-                    {-2, -1}, {-2, 1}, {2, -1}});
-        }
+        return new MoveGenerator(board).getMoves(myPosition);
     }
 
     @Override
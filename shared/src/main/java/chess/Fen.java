@@ -0,0 +1,121 @@
+package chess;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation.
+ * <p>
+ * Piece placement, the side to move and the move number carry over. This game has
+ * no castling or en passant, so those fields and the halfmove clock are accepted
+ * when reading and written as {@code - - 0}.
+ */
+public final class Fen {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+
+    private Fen() {
+    }
+
+    /**
+     * @param fen position to load
+     * @return a game set up at the position
+     * @throws IllegalArgumentException if the placement or side to move is malformed
+     */
+    public static ChessGame parse(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("Expected 8 ranks in FEN: " + fen);
+        }
+
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : ranks[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    col += c - '0';
+                } else if (col <= 8) {
+                    board.setPiece(ChessBoard.square(row, col++), piece(c));
+                } else {
+                    col++;
+                }
+            }
+            if (col != 9) {
+                throw new IllegalArgumentException("Rank " + row + " does not have 8 squares: " + fen);
+            }
+        }
+
+        ChessGame.TeamColor turn = ChessGame.TeamColor.WHITE;
+        if (fields.length > 1) {
+            turn = switch (fields[1]) {
+                case "w" -> ChessGame.TeamColor.WHITE;
+                case "b" -> ChessGame.TeamColor.BLACK;
+                default -> throw new IllegalArgumentException("Unknown side to move: " + fields[1]);
+            };
+        }
+        int ply = 0;
+        if (fields.length > 5) {
+            try {
+                ply = Math.max(0, (Integer.parseInt(fields[5]) - 1) * 2) + turn.ordinal();
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Bad move number: " + fields[5], ex);
+            }
+        }
+        return new ChessGame(board, turn, ply);
+    }
+
+    /**
+     * @return FEN for the game's current position
+     */
+    public static String format(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        StringBuilder fen = new StringBuilder(64);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(ChessBoard.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(letter(piece));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 1) {
+                fen.append('/');
+            }
+        }
+        fen.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w" : " b");
+        return fen.append(" - - 0 ").append(game.getPly() / 2 + 1).toString();
+    }
+
+    private static ChessPiece piece(char c) {
+        ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessPiece.PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> throw new IllegalArgumentException("Unknown piece in FEN: " + c);
+        };
+        return new ChessPiece(color, type);
+    }
+
+    private static char letter(ChessPiece piece) {
+        char c = switch (piece.getPieceType()) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case ROOK -> 'r';
+            case PAWN -> 'p';
+        };
+        return piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(c) : c;
+    }
+}
@@ -1,84 +1,79 @@
 package chess;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import static chess.ChessPiece.PieceType.*;
 
 public record MoveGenerator(ChessBoard board) {
 
-    //function works for rook, bishop, king, knight, and queen
-    public HashSet<ChessMove> getSlidingMoves(ChessPosition myPosition, int[][] directions) {
-        HashSet<ChessMove> moves = new HashSet<>();
-        for (int[] dir : directions) {
-            int dRow = dir[0];
-            int dCol = dir[1];
-            ChessPosition current = myPosition;
+    private static final ChessPiece.PieceType[] PROMOTIONS = {QUEEN, ROOK, BISHOP, KNIGHT};
+    private static final long RANK_1 = 0xFFL;
+    private static final long RANK_8 = 0xFFL << 56;
 
-            while (true) {
-                current = new ChessPosition(current.getRow() + dRow, current.getColumn() + dCol);
-                if (!board.inBounds(current)) {
-                    break;
-                } else if (board.isEmpty(current)) {
-                    moves.add(new ChessMove(myPosition, current, null));
-                    if (board.getPiece(myPosition).getPieceType() == KING ||
-                            board.getPiece(myPosition).getPieceType() == KNIGHT) {
-                        break;
-                    }
-                } else if (board.getPiece(current).getTeamColor() != board.getPiece(myPosition).getTeamColor()) {
-                    moves.add(new ChessMove(myPosition, current, null));
-                    break;
-                } else {
-                    break;
-                }
-            }
-        }
+    /**
+     * Calculates the pseudo-legal moves for the piece at the given position
+     *
+     * @return moves the piece can make, ignoring whether they leave its king in check
+     */
+    public List<ChessMove> getMoves(ChessPosition myPosition) {
+        int from = ChessBoard.square(myPosition);
+        ChessPiece piece = board.getPiece(from);
+        long targets = getTargets(from, piece);
+        List<ChessMove> moves = new ArrayList<>(Long.bitCount(targets) * (isPromotion(piece, targets)? 4 : 1));
+        addMoves(moves, myPosition, piece, targets);
         return moves;
     }
 
-    private void addPawnMoves(HashSet<ChessMove> moves, ChessPosition from, ChessPosition to, ChessGame.TeamColor color) {
-        if (color == ChessGame.TeamColor.WHITE && to.getRow() == 8 || color == ChessGame.TeamColor.BLACK && to.getRow() == 1) {
-            ChessPiece.PieceType[] promotions = {
-                    QUEEN, ROOK, BISHOP, KNIGHT
-            };
+    /**
+     * @return mask of every square the piece standing on {@code from} can move to
+     */
+    long getTargets(int from, ChessPiece piece) {
+        ChessGame.TeamColor color = piece.getTeamColor();
+        long own = board.getOccupancy(color);
+        long occupied = board.getOccupied();
+        return switch (piece.getPieceType()) {
+            case KING -> Attacks.king(from) & ~own;
+            case KNIGHT -> Attacks.knight(from) & ~own;
+            case ROOK -> Attacks.rook(from, occupied) & ~own;
+            case BISHOP -> Attacks.bishop(from, occupied) & ~own;
+            case QUEEN -> Attacks.queen(from, occupied) & ~own;
+            case PAWN -> getPawnTargets(from, color, occupied);
+        };
+    }
 
-            for (ChessPiece.PieceType promotion : promotions) {
-                moves.add(new ChessMove(from, to, promotion));
-            }
+    //pawns push forward onto empty squares (twice from their starting row) and capture diagonally
+    private long getPawnTargets(int from, ChessGame.TeamColor color, long occupied) {
+        long enemies = occupied & ~board.getOccupancy(color);
+        long captures = Attacks.pawn(color, from) & enemies;
+        long start = 1L << from;
+        long pushes;
+        if (color == ChessGame.TeamColor.WHITE) {
+            long single = (start << 8) & ~occupied;
+            pushes = single | ((single & 0xFF0000L) << 8 & ~occupied);
         } else {
-            moves.add(new ChessMove(from, to, null));
+            long single = (start >>> 8) & ~occupied;
+            pushes = single | ((single & 0xFF0000000000L) >>> 8 & ~occupied);
         }
-
+        return pushes | captures;
     }
 
-    public HashSet<ChessMove> getPawnMoves(ChessPosition myPosition) {
-        HashSet<ChessMove> moves = new HashSet<>();
-        ChessPiece pawn = board.getPiece(myPosition);
-        //if it's white it moves up the board, black it moves down
-        int direction = (pawn.getTeamColor() == ChessGame.TeamColor.WHITE) ? 1 : -1;
-
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-
-        //Logic: make variable for next position forward. If it's empty and in bounds, it's added
-        // then check if the current position is 2nd row (white) or 7th (black), if yes, check if it can move again
-        // then looking diagonally, if there's an enemy piece there, then add it
-
-        ChessPosition oneForward = new ChessPosition(row + direction, col);
-        if (board.inBounds(oneForward) && board.isEmpty(oneForward)) {
-            addPawnMoves(moves, myPosition, oneForward, pawn.getTeamColor());
-            if (pawn.getTeamColor() == ChessGame.TeamColor.WHITE && row == 2 || pawn.getTeamColor() == ChessGame.TeamColor.BLACK && row == 7) {
-                ChessPosition twoForward = new ChessPosition(row + 2 * direction, col);
-                if (board.inBounds(twoForward) && board.isEmpty(twoForward)) {
-                    addPawnMoves(moves, myPosition, twoForward, pawn.getTeamColor());
+    void addMoves(Collection<ChessMove> moves, ChessPosition from, ChessPiece piece, long targets) {
+        boolean pawn = piece.getPieceType() == PAWN;
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            ChessPosition end = ChessBoard.position(to);
+            if (pawn && ((1L << to) & (RANK_1 | RANK_8)) != 0) {
+                for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                    moves.add(new ChessMove(from, end, promotion));
                 }
+            } else {
+                moves.add(new ChessMove(from, end, null));
             }
         }
-        int[][] diagonalDir = {{direction, 1}, {direction, -1}};
-        for (int[] dir : diagonalDir) {
-            ChessPosition diagonal = new ChessPosition(row + dir[0], col + dir[1]);
-            if (board.inBounds(diagonal) && !board.isEmpty(diagonal) && board.getPiece(diagonal).getTeamColor() != pawn.getTeamColor()) {
-                addPawnMoves(moves, myPosition, diagonal, pawn.getTeamColor());
-            }
-        }
-        return moves;
+    }
+
+    private static boolean isPromotion(ChessPiece piece, long targets) {
+        return piece.getPieceType() == PAWN && (targets & (RANK_1 | RANK_8)) != 0;
     }
 }
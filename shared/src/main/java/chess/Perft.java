@@ -0,0 +1,86 @@
+package chess;
+
+import java.util.List;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth. Comparing the
+ * counts against known values catches move generation bugs, and timing them gives
+ * a nodes-per-second figure for the engine.
+ * <p>
+ * Run {@code main} to walk the reference positions and print counts and speed.
+ */
+public final class Perft {
+
+    /**
+     * A reference position with its known node count at each depth, starting at 1.
+     * Published counts include castling and en passant, which this game does not
+     * have, so these are taken at the depths where those moves don't change the
+     * total or with them subtracted out.
+     */
+    public record Position(String name, String fen, long... nodes) {
+        public int maxDepth() {
+            return nodes.length;
+        }
+
+        public long expected(int depth) {
+            return nodes[depth - 1];
+        }
+    }
+
+    public static final List<Position> REFERENCE = List.of(
+            new Position("start", Fen.START, 20, 400, 8902, 197281, 4865351),
+            new Position("rook endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 14, 191, 2810),
+            new Position("middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2079, 89890, 3894594)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * @return number of legal move sequences of exactly {@code depth} moves from the game's position
+     */
+    public static long perft(ChessGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        List<ChessMove> moves = game.getLegalMoves(turn);
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        ChessBoard board = game.getBoard();
+        ChessGame.TeamColor next = (turn == ChessGame.TeamColor.WHITE)? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long nodes = 0;
+        for (ChessMove move : moves) {
+            board.makeMove(move);
+            game.setTeamTurn(next);
+            nodes += perft(game, depth - 1);
+            game.setTeamTurn(turn);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        int limit = (args.length > 0)? Integer.parseInt(args[0]) : 6;
+        boolean failed = false;
+        for (Position position : REFERENCE) {
+            for (int depth = 1; depth <= Math.min(limit, position.maxDepth()); depth++) {
+                ChessGame game = Fen.parse(position.fen());
+                long start = System.nanoTime();
+                long nodes = perft(game, depth);
+                long elapsed = Math.max(System.nanoTime() - start, 1);
+                boolean ok = nodes == position.expected(depth);
+                failed |= !ok;
+                System.out.printf("%-14s depth %d  %,12d nodes  %8.1f ms  %,12.0f nodes/s  %s%n",
+                        position.name(), depth, nodes, elapsed / 1e6, nodes * 1e9 / elapsed,
+                        ok? "ok" : "expected " + position.expected(depth));
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of one key per
+ * (piece, square) pair on the board plus a key when black is to move, so a move
+ * can update it with a few XORs instead of rehashing the board.
+ * <p>
+ * The keys come from a fixed seed so every JVM, client or server, computes the
+ * same key for the same position.
+ */
+final class Zobrist {
+    static final long[][] PIECE_SQUARE = new long[ChessPiece.PieceType.values().length * 2][64];
+    static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EEDC0DEL);
+        for (long[] keys : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+}
@@ -0,0 +1,234 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessGameCodec;
+import chess.ChessPiece;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary WebSocket frames, used in place of Gson JSON by clients that connect with
+ * {@code ?protocol=binary}.
+ * <p>
+ * Every frame starts with a two byte header: the format version, then the command
+ * or message type's ordinal. Whole numbers are unsigned varints (7 bits a byte, low
+ * bits first) and text is a varint byte count followed by UTF-8.
+ * <ul>
+ * <li>Commands: game ID, then the auth token, which may be empty after CONNECT to
+ * mean the token this connection connected with. MAKE_MOVE adds the move as two
+ * bytes (big-endian {@link ChessGameCodec#encodeMove}).
+ * <li>LOAD_GAME: the game in {@link ChessGameCodec} form.
+ * <li>MOVE: the move's two bytes, the captured piece type's ordinal plus one (0 for
+ * none), the sequence number, the Zobrist key as eight bytes and the status ordinal.
+ * <li>NOTIFICATION and ERROR: the text.
+ * <li>BATCH: the message count, then each message as its byte count and frame.
+ * </ul>
+ */
+public final class BinaryCodec {
+    public static final byte VERSION = 1;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * @param withToken whether to include the auth token; without it the server uses
+     *                  the one this connection sent with CONNECT
+     */
+    public static byte[] encodeCommand(UserGameCommand command, boolean withToken) {
+        var out = new ByteArrayOutputStream(32);
+        out.write(VERSION);
+        out.write(command.getCommandType().ordinal());
+        writeVarint(out, command.getGameID());
+        writeText(out, withToken? command.getAuthToken() : "");
+        if (command instanceof MakeMoveCommand move) {
+            writeShort(out, ChessGameCodec.encodeMove(move.getMove()));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the command, a {@link MakeMoveCommand} for MAKE_MOVE, with a null auth
+     * token if the frame left it out
+     * @throws IllegalArgumentException if the bytes are not a command frame
+     */
+    public static UserGameCommand decodeCommand(byte[] data, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(data, offset, length);
+        try {
+            var type = readType(in, UserGameCommand.CommandType.values());
+            int gameID = readVarint(in);
+            String authToken = readText(in);
+            if (authToken.isEmpty()) {
+                authToken = null;
+            }
+            UserGameCommand command = (type == UserGameCommand.CommandType.MAKE_MOVE)
+                    ? new MakeMoveCommand(authToken, gameID, ChessGameCodec.decodeMove(in.getShort() & 0xFFFF))
+                    : new UserGameCommand(type, authToken, gameID);
+            checkEnd(in);
+            return command;
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Truncated command frame");
+        }
+    }
+
+    public static byte[] encodeMessage(ServerMessage message) {
+        var out = new ByteArrayOutputStream(64);
+        out.write(VERSION);
+        out.write(message.getServerMessageType().ordinal());
+        switch (message) {
+            case LoadGameMessage load -> out.writeBytes(ChessGameCodec.encode(load.getGame()));
+            case MoveMessage move -> {
+                writeShort(out, ChessGameCodec.encodeMove(move.getMove()));
+                out.write((move.getCaptured() == null)? 0 : move.getCaptured().ordinal() + 1);
+                writeVarint(out, move.getSequence());
+                long key = move.getZobristKey();
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (key >>> shift));
+                }
+                out.write(move.getStatus().ordinal());
+            }
+            case NotificationMessage notification -> writeText(out, notification.getMessage());
+            case ErrorMessage error -> writeText(out, error.getErrorMessage());
+            default -> throw new IllegalArgumentException("No binary form for " + message.getServerMessageType());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Combines already encoded messages into one BATCH frame
+     */
+    public static byte[] encodeBatch(List<byte[]> messages) {
+        var out = new ByteArrayOutputStream();
+        out.write(VERSION);
+        out.write(ServerMessage.ServerMessageType.BATCH.ordinal());
+        writeVarint(out, messages.size());
+        for (byte[] message : messages) {
+            writeVarint(out, message.length);
+            out.writeBytes(message);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the messages in the frame; one, unless it is a BATCH
+     * @throws IllegalArgumentException if the bytes are not a message frame
+     */
+    public static List<ServerMessage> decodeMessages(ByteBuffer in) {
+        List<ServerMessage> messages = new ArrayList<>();
+        try {
+            decodeMessage(in, messages);
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Truncated message frame");
+        }
+        return messages;
+    }
+
+    private static void decodeMessage(ByteBuffer in, List<ServerMessage> messages) {
+        var type = readType(in, ServerMessage.ServerMessageType.values());
+        switch (type) {
+            case LOAD_GAME -> {
+                byte[] game = new byte[ChessGameCodec.LENGTH];
+                in.get(game);
+                messages.add(new LoadGameMessage(ChessGameCodec.decode(game)));
+            }
+            case MOVE -> {
+                var move = ChessGameCodec.decodeMove(in.getShort() & 0xFFFF);
+                int captured = in.get();
+                int sequence = readVarint(in);
+                long key = in.getLong();
+                int status = in.get();
+                var types = ChessPiece.PieceType.values();
+                var statuses = ChessGame.GameStatus.values();
+                if (captured < 0 || captured > types.length || status < 0 || status >= statuses.length) {
+                    throw new IllegalArgumentException("Bad MOVE frame");
+                }
+                messages.add(new MoveMessage(move, (captured == 0)? null : types[captured - 1], sequence, key,
+                        statuses[status]));
+            }
+            case NOTIFICATION -> messages.add(new NotificationMessage(readText(in)));
+            case ERROR -> messages.add(new ErrorMessage(readText(in)));
+            case BATCH -> {
+                int count = readVarint(in);
+                for (int i = 0; i < count; i++) {
+                    int length = readVarint(in);
+                    int end = in.position() + length;
+                    if (length > in.remaining()) {
+                        throw new IllegalArgumentException("Truncated message frame");
+                    }
+                    decodeMessage(in.slice(in.position(), length), messages);
+                    in.position(end);
+                }
+            }
+        }
+        checkEnd(in);
+    }
+
+    private static <T extends Enum<T>> T readType(ByteBuffer in, T[] types) {
+        int version = in.get();
+        int type = in.get();
+        if (version != VERSION || type < 0 || type >= types.length) {
+            throw new IllegalArgumentException("Bad frame header");
+        }
+        return types[type];
+    }
+
+    private static void checkEnd(ByteBuffer in) {
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected bytes at end of frame");
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, short value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative varint " + value);
+        }
+        while (value >= 0x80) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Bad varint");
+    }
+
+    private static void writeText(ByteArrayOutputStream out, String text) {
+        byte[] bytes = (text == null)? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static String readText(ByteBuffer in) {
+        int length = readVarint(in);
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("Truncated text");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
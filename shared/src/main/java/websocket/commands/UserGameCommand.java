@@ -26,7 +26,9 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        // asks for a full LOAD_GAME after a MOVE that didn't apply cleanly
+        RESYNC
     }
 
     public CommandType getCommandType() {
@@ -0,0 +1,23 @@
+package websocket.messages;
+
+import com.google.gson.JsonObject;
+
+import java.util.List;
+
+/**
+ * Several server messages sent in one frame, in the order they would otherwise
+ * have been sent. The server only batches for clients that connected with
+ * {@code ?batch=true}.
+ */
+public class BatchMessage extends ServerMessage {
+    private final List<JsonObject> messages;
+
+    public BatchMessage(List<JsonObject> messages) {
+        super(ServerMessageType.BATCH);
+        this.messages = messages;
+    }
+
+    public List<JsonObject> getMessages() {
+        return messages;
+    }
+}
@@ -0,0 +1,55 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+
+/**
+ * A move made in the game, sent in place of a full LOAD_GAME to clients that
+ * connected with {@code ?delta=true}. The client makes the move on its own copy of
+ * the game. If the sequence number isn't the one after its game's, or the
+ * resulting Zobrist key doesn't match, it sends RESYNC for a full LOAD_GAME.
+ */
+public class MoveMessage extends ServerMessage {
+    private final ChessMove move;
+    private final ChessPiece.PieceType captured;
+    private final int sequence;
+    private final long zobristKey;
+    private final ChessGame.GameStatus status;
+
+    /**
+     * @param captured   type of the piece taken, or null
+     * @param sequence   the game's move count after this move
+     * @param zobristKey the game's Zobrist key after this move
+     * @param status     the status of the team now to move
+     */
+    public MoveMessage(ChessMove move, ChessPiece.PieceType captured, int sequence, long zobristKey,
+                       ChessGame.GameStatus status) {
+        super(ServerMessageType.MOVE);
+        this.move = move;
+        this.captured = captured;
+        this.sequence = sequence;
+        this.zobristKey = zobristKey;
+        this.status = status;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public ChessPiece.PieceType getCaptured() {
+        return captured;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    public ChessGame.GameStatus getStatus() {
+        return status;
+    }
+}
@@ -18,7 +18,9 @@ public class ServerMessage {
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        BATCH,
+        MOVE
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -0,0 +1,72 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ChessGameCodecTests {
+
+    @Test
+    @DisplayName("Start Position Round Trip")
+    public void startPosition() {
+        ChessGame game = new ChessGame();
+        byte[] bytes = ChessGameCodec.encode(game);
+        Assertions.assertEquals(ChessGameCodec.LENGTH, bytes.length, "Unexpected encoded length");
+        ChessGame decoded = ChessGameCodec.decode(bytes);
+        Assertions.assertEquals(game, decoded, "Decoded game differs");
+        Assertions.assertEquals(game.getZobristKey(), decoded.getZobristKey(), "Decoded key differs");
+    }
+
+    @Test
+    @DisplayName("Round Trip After Moves")
+    public void afterMoves() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+
+        ChessGame decoded = ChessGameCodec.decode(ChessGameCodec.encode(game));
+        Assertions.assertEquals(game, decoded, "Decoded game differs");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, decoded.getTeamTurn(), "Decoded turn differs");
+        Assertions.assertEquals(3, decoded.getPly(), "Decoded move count differs");
+        Assertions.assertEquals(game.getLegalMoves(ChessGame.TeamColor.BLACK), decoded.getLegalMoves(ChessGame.TeamColor.BLACK),
+                "Decoded game has different moves");
+    }
+
+    @Test
+    @DisplayName("Read Version 1")
+    public void versionOne() {
+        byte[] bytes = java.util.Arrays.copyOf(ChessGameCodec.encode(new ChessGame()), 34);
+        bytes[0] = 1;
+        ChessGame decoded = ChessGameCodec.decode(bytes);
+        Assertions.assertEquals(new ChessGame(), decoded, "Version 1 game differs");
+        Assertions.assertEquals(0, decoded.getPly(), "Version 1 game should start at move 0");
+    }
+
+    @Test
+    @DisplayName("Move Round Trip")
+    public void moves() {
+        for (ChessPiece.PieceType promotion : new ChessPiece.PieceType[]{null, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KNIGHT}) {
+            ChessMove move = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 2), promotion);
+            Assertions.assertEquals(move, ChessGameCodec.decodeMove(ChessGameCodec.encodeMove(move)), "Decoded move differs");
+        }
+        ChessMove corner = new ChessMove(new ChessPosition(8, 8), new ChessPosition(1, 1), null);
+        Assertions.assertEquals(corner, ChessGameCodec.decodeMove(ChessGameCodec.encodeMove(corner)), "Decoded move differs");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decodeMove(0x7000));
+    }
+
+    @Test
+    @DisplayName("Reject Malformed Bytes")
+    public void malformed() {
+        byte[] bytes = ChessGameCodec.encode(new ChessGame());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(new byte[3]));
+
+        byte[] badVersion = bytes.clone();
+        badVersion[0] = 99;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(badVersion));
+
+        byte[] badPiece = bytes.clone();
+        badPiece[20] = (byte) 0xFF;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(badPiece));
+    }
+}
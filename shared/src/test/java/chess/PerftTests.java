@@ -0,0 +1,51 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PerftTests {
+
+    @Test
+    @DisplayName("Reference Position Node Counts")
+    public void referencePositions() {
+        for (Perft.Position position : Perft.REFERENCE) {
+            for (int depth = 1; depth <= position.maxDepth(); depth++) {
+                ChessGame game = Fen.parse(position.fen());
+                Assertions.assertEquals(position.expected(depth), Perft.perft(game, depth),
+                        "Wrong node count for " + position.name() + " at depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Perft Leaves Position Unchanged")
+    public void positionRestored() {
+        for (Perft.Position position : Perft.REFERENCE) {
+            ChessGame game = Fen.parse(position.fen());
+            ChessGame before = Fen.parse(position.fen());
+            Perft.perft(game, 3);
+            Assertions.assertEquals(before, game, "Board changed after perft of " + position.name());
+            Assertions.assertEquals(before.getZobristKey(), game.getZobristKey(), "Key changed after perft of " + position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("FEN Round Trip")
+    public void fenRoundTrip() {
+        Assertions.assertEquals(new ChessGame(), Fen.parse(Fen.START), "Start FEN does not load the default board");
+        for (Perft.Position position : Perft.REFERENCE) {
+            String fen = position.fen();
+            Assertions.assertEquals(fen, Fen.format(Fen.parse(position.fen())), "FEN did not round trip");
+        }
+    }
+
+    @Test
+    @DisplayName("Malformed FEN")
+    public void malformedFen() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse("8/8/8 w - - 0 1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse("9/8/8/8/8/8/8/8 w - - 0 1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse("8/8/8/8/8/8/8/7x w - - 0 1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse("8/8/8/8/8/8/8/8 x - - 0 1"));
+    }
+}
@@ -0,0 +1,87 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+public class BinaryCodecTests {
+
+    @Test
+    @DisplayName("Command Round Trip")
+    public void commandRoundTrip() {
+        var connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 300);
+        byte[] bytes = BinaryCodec.encodeCommand(connect, true);
+        Assertions.assertEquals(connect, BinaryCodec.decodeCommand(bytes, 0, bytes.length));
+
+        var move = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT);
+        bytes = BinaryCodec.encodeCommand(new MakeMoveCommand("token", 5, move), false);
+        Assertions.assertEquals(6, bytes.length, "Header, game ID, empty token and move");
+        var decoded = BinaryCodec.decodeCommand(bytes, 0, bytes.length);
+        Assertions.assertNull(decoded.getAuthToken());
+        Assertions.assertEquals(move, ((MakeMoveCommand) decoded).getMove());
+    }
+
+    @Test
+    @DisplayName("Message Round Trip")
+    public void messageRoundTrip() {
+        var game = new ChessGame();
+        var load = decodeOne(BinaryCodec.encodeMessage(new LoadGameMessage(game)));
+        Assertions.assertEquals(game, ((LoadGameMessage) load).getGame());
+
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var delta = (MoveMessage) decodeOne(BinaryCodec.encodeMessage(
+                new MoveMessage(move, ChessPiece.PieceType.PAWN, 130, Long.MIN_VALUE + 7, ChessGame.GameStatus.CHECK)));
+        Assertions.assertEquals(move, delta.getMove());
+        Assertions.assertEquals(ChessPiece.PieceType.PAWN, delta.getCaptured());
+        Assertions.assertEquals(130, delta.getSequence());
+        Assertions.assertEquals(Long.MIN_VALUE + 7, delta.getZobristKey());
+        Assertions.assertEquals(ChessGame.GameStatus.CHECK, delta.getStatus());
+
+        var note = decodeOne(BinaryCodec.encodeMessage(new NotificationMessage("é moved")));
+        Assertions.assertEquals("é moved", ((NotificationMessage) note).getMessage());
+    }
+
+    @Test
+    @DisplayName("Batch Round Trip")
+    public void batchRoundTrip() {
+        byte[] batch = BinaryCodec.encodeBatch(List.of(
+                BinaryCodec.encodeMessage(new NotificationMessage("one")),
+                BinaryCodec.encodeMessage(new ErrorMessage("two"))));
+        var messages = BinaryCodec.decodeMessages(ByteBuffer.wrap(batch));
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("one", ((NotificationMessage) messages.get(0)).getMessage());
+        Assertions.assertEquals("two", ((ErrorMessage) messages.get(1)).getErrorMessage());
+    }
+
+    @Test
+    @DisplayName("Malformed Frames")
+    public void malformedFrames() {
+        byte[] connect = BinaryCodec.encodeCommand(new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 1), true);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decodeCommand(connect, 0, connect.length - 1));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decodeCommand(new byte[]{BinaryCodec.VERSION, 99, 1, 0}, 0, 4));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decodeMessages(ByteBuffer.wrap(new byte[]{2, 0})));
+        byte[] note = BinaryCodec.encodeMessage(new NotificationMessage("x"));
+        byte[] padded = Arrays.copyOf(note, note.length + 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeMessages(ByteBuffer.wrap(padded)));
+    }
+
+    private static ServerMessage decodeOne(byte[] frame) {
+        var messages = BinaryCodec.decodeMessages(ByteBuffer.wrap(frame));
+        Assertions.assertEquals(1, messages.size());
+        return messages.getFirst();
+    }
+}